@@ -19,9 +19,11 @@
  */
 package org.xwiki.fullcalendar;
 
+import java.io.Writer;
 import java.net.URL;
 import java.util.Date;
 import java.util.List;
+import java.util.function.Consumer;
 
 import org.xwiki.component.annotation.Role;
 import org.xwiki.fullcalendar.model.CalendarEvent;
@@ -71,6 +73,91 @@ public interface FullCalendarManager
     @Unstable
     String getICalEvents(URL iCalURL, Date intervalStart, Date intervalEnd, boolean collapse) throws Exception;
 
+    /**
+     * Write the events from an iCal in a specified date interval as a JSON array, one event at a time, so that the
+     * whole JSON doesn't need to be held in memory.
+     *
+     * @param iCalURL the iCal URL.
+     * @param intervalStart the start of the interval of the returned calendar events.
+     * @param intervalEnd the end of the interval.
+     * @param collapse expands the recurring events if {@code false}, or collapses them into the parent otherwise.
+     * @param writer where to write the JSON that contains a list of FullCalendar Event Objects; it is not closed.
+     * @throws Exception if the retrieval of the iCal fails, if it contains malformed dates or if the writing fails.
+     * @since 2.5.5
+     */
+    @Unstable
+    void writeICalEvents(URL iCalURL, Date intervalStart, Date intervalEnd, boolean collapse, Writer writer)
+        throws Exception;
+
+    /**
+     * Write the events from an iCal in a specified date interval as a JSON array, unless the client already has them.
+     * A strong validator of the events, to be used as the {@code ETag} of the response, is computed from the same
+     * version of the iCal as the written events and passed to the given handler before anything is written. It
+     * changes when the content of the iCal changes, and depends on the interval, so that unchanged events can be
+     * validated without computing them. A validator sent with events whose writing failed is not validated until the
+     * events are written successfully, since the client may have kept a partial response.
+     *
+     * @param iCalURL the iCal URL.
+     * @param intervalStart the start of the interval of the returned calendar events.
+     * @param intervalEnd the end of the interval.
+     * @param collapse expands the recurring events if {@code false}, or collapses them into the parent otherwise.
+     * @param ifNoneMatch the validators of the events the client has, as sent in the {@code If-None-Match} header, or
+     *     {@code null}.
+     * @param eTagHandler receives the validator, quoted as expected by the {@code ETag} header.
+     * @param writer where to write the JSON that contains a list of FullCalendar Event Objects; it is not closed.
+     * @return {@code true} if the events were written, {@code false} if the client already has them.
+     * @throws Exception if the retrieval of the iCal fails, if it contains malformed dates or if the writing fails.
+     * @since 2.5.5
+     */
+    @Unstable
+    boolean writeICalEvents(URL iCalURL, Date intervalStart, Date intervalEnd, boolean collapse, String ifNoneMatch,
+        Consumer<String> eTagHandler, Writer writer) throws Exception;
+
+    /**
+     * Write the events from an iCal in a specified date interval that changed since the version of the iCal identified
+     * by a sync token, so that long-lived clients can update their events without fetching all of them again. The
+     * result is a JSON object with the following entries:
+     * <ul>
+     * <li>{@code syncToken}: the token of the current version of the iCal, to pass on the next call;</li>
+     * <li>{@code full}: {@code true} if the token is missing, unknown or too old, in which case all the events are
+     * returned and replace the ones the client has;</li>
+     * <li>{@code removed}: the UIDs of the events that were changed or removed, whose events the client must drop
+     * before adding the returned ones;</li>
+     * <li>{@code events}: the FullCalendar Event Objects of the events that were added or changed, or of all the
+     * events.</li>
+     * </ul>
+     *
+     * @param iCalURL the iCal URL.
+     * @param intervalStart the start of the interval of the returned calendar events.
+     * @param intervalEnd the end of the interval.
+     * @param collapse expands the recurring events if {@code false}, or collapses them into the parent otherwise.
+     * @param syncToken the token returned by the previous call, {@code null} to get all the events.
+     * @param writer where to write the JSON object; it is not closed.
+     * @throws Exception if the retrieval of the iCal fails, if it contains malformed dates or if the writing fails.
+     * @since 2.5.5
+     */
+    @Unstable
+    void writeICalEventChanges(URL iCalURL, Date intervalStart, Date intervalEnd, boolean collapse, String syncToken,
+        Writer writer) throws Exception;
+
+    /**
+     * Write the events from several iCals in a specified date interval as a single JSON array sorted by start date. The
+     * iCals are fetched and processed concurrently, and the URL of the iCal of each event is stored in the
+     * {@code source} entry of its {@link CalendarEvent#getMeta() meta} property. The iCals that can't be retrieved are
+     * skipped.
+     *
+     * @param iCalURLs the iCal URLs.
+     * @param intervalStart the start of the interval of the returned calendar events.
+     * @param intervalEnd the end of the interval.
+     * @param collapse expands the recurring events if {@code false}, or collapses them into the parent otherwise.
+     * @param writer where to write the JSON that contains a list of FullCalendar Event Objects; it is not closed.
+     * @throws Exception if the retrieval of all the iCals fails, or if the writing fails.
+     * @since 2.5.5
+     */
+    @Unstable
+    void writeICalEvents(List<URL> iCalURLs, Date intervalStart, Date intervalEnd, boolean collapse, Writer writer)
+        throws Exception;
+
     /**
      * Get the events from an iCal file.
      *
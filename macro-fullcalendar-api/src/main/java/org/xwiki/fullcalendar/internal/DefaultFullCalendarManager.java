@@ -19,32 +19,21 @@
  */
 package org.xwiki.fullcalendar.internal;
 
+import java.io.StringWriter;
+import java.io.Writer;
 import java.net.URL;
-import java.time.LocalDateTime;
-import java.time.ZoneId;
-import java.util.ArrayList;
 import java.util.Date;
 import java.util.List;
-import java.util.stream.Collectors;
+import java.util.function.Consumer;
 
 import javax.inject.Inject;
 import javax.inject.Singleton;
 
-import org.slf4j.Logger;
 import org.xwiki.component.annotation.Component;
 import org.xwiki.fullcalendar.FullCalendarManager;
-import org.xwiki.fullcalendar.internal.util.CalendarReader;
-import org.xwiki.fullcalendar.internal.util.DateProcessor;
-import org.xwiki.fullcalendar.internal.util.EventProcessor;
-import org.xwiki.fullcalendar.internal.util.RecurrenceProcessor;
+import org.xwiki.fullcalendar.internal.feed.FeedSnapshotProvider;
 import org.xwiki.fullcalendar.model.CalendarEvent;
 
-import com.fasterxml.jackson.databind.ObjectMapper;
-
-import net.fortuna.ical4j.model.Property;
-import net.fortuna.ical4j.model.component.CalendarComponent;
-import net.fortuna.ical4j.model.component.VEvent;
-
 /**
  * Default implementation for {@link FullCalendarManager}.
  *
@@ -55,19 +44,17 @@ import net.fortuna.ical4j.model.component.VEvent;
 @Singleton
 public class DefaultFullCalendarManager implements FullCalendarManager
 {
-    private static final ObjectMapper MAPPER = new ObjectMapper();
-
     @Inject
-    private RecurrenceProcessor recurrenceProcessor;
+    private FeedSnapshotProvider feedSnapshotProvider;
 
     @Inject
-    private EventProcessor eventProcessor;
+    private FeedEventsProcessor feedEventsProcessor;
 
     @Inject
-    private DateProcessor dateProcessor;
+    private FeedEventsWriter feedEventsWriter;
 
     @Inject
-    private Logger logger;
+    private MergedFeedEventsWriter mergedFeedEventsWriter;
 
     @Override
     public String iCalToJSON(String iCalStringURL) throws Exception
@@ -79,83 +66,53 @@ public class DefaultFullCalendarManager implements FullCalendarManager
     public String getICalEvents(URL iCalURL, java.util.Date intervalStart, java.util.Date intervalEnd, boolean collapse)
         throws Exception
     {
-        CalendarReader calendarReader = new CalendarReader(iCalURL);
-        ArrayList<CalendarEvent> calendarEventsJSON =
-            getCalendarEvents(intervalStart, intervalEnd, collapse, calendarReader);
-        return MAPPER.writeValueAsString(calendarEventsJSON);
+        StringWriter writer = new StringWriter();
+        writeICalEvents(iCalURL, intervalStart, intervalEnd, collapse, writer);
+        return writer.toString();
     }
 
     @Override
-    public String getICalEvents(URL iCalURL, java.util.Date intervalStart, java.util.Date intervalEnd) throws Exception
+    public void writeICalEvents(URL iCalURL, Date intervalStart, Date intervalEnd, boolean collapse, Writer writer)
+        throws Exception
     {
-        return getICalEvents(iCalURL, intervalStart, intervalEnd, false);
+        feedEventsWriter.writeEvents(feedSnapshotProvider.getCurrentFeedSnapshot(iCalURL), intervalStart, intervalEnd,
+            collapse, writer);
     }
 
     @Override
-    public List<CalendarEvent> getICalEventsFromFile(byte[] iCalFile, java.util.Date intervalStart,
-        java.util.Date intervalEnd, boolean collapse) throws Exception
+    public void writeICalEventChanges(URL iCalURL, Date intervalStart, Date intervalEnd, boolean collapse,
+        String syncToken, Writer writer) throws Exception
     {
-        CalendarReader calendarReader = new CalendarReader(iCalFile);
-        ArrayList<CalendarEvent> calendarEventsJSON =
-            getCalendarEvents(intervalStart, intervalEnd, collapse, calendarReader);
-        return calendarEventsJSON;
+        feedEventsWriter.writeEventChanges(feedSnapshotProvider.getCurrentFeedSnapshot(iCalURL), intervalStart,
+            intervalEnd, collapse, syncToken, writer);
     }
 
-    private ArrayList<CalendarEvent> getCalendarEvents(Date intervalStart, Date intervalEnd, boolean collapse,
-        CalendarReader calendarReader) throws Exception
+    @Override
+    public boolean writeICalEvents(URL iCalURL, Date intervalStart, Date intervalEnd, boolean collapse,
+        String ifNoneMatch, Consumer<String> eTagHandler, Writer writer) throws Exception
     {
-        ZoneId zoneId = calendarReader.getZoneId();
-        LocalDateTime icalIntervalStart =
-            intervalStart == null ? null : dateProcessor.toLocalDateTime(intervalStart, zoneId);
-        LocalDateTime icalIntervalEnd = intervalEnd == null ? null : dateProcessor.toLocalDateTime(intervalEnd, zoneId);
-        ArrayList<CalendarEvent> calendarEventsJSON = new ArrayList<>();
-        List<CalendarComponent> sortedEvents = getSortedEvents(calendarReader.getEvents());
-        addEvents(sortedEvents, zoneId, icalIntervalStart, icalIntervalEnd, calendarEventsJSON, collapse);
-        return calendarEventsJSON;
+        // Resolve the snapshot once, so that the validator and the events come from the same version of the feed.
+        return feedEventsWriter.writeEvents(feedSnapshotProvider.getCurrentFeedSnapshot(iCalURL), intervalStart,
+            intervalEnd, collapse, ifNoneMatch, eTagHandler, writer);
     }
 
-    private void addEvents(List<CalendarComponent> events, ZoneId zoneId, LocalDateTime icalIntervalStart,
-        LocalDateTime icalIntervalEnd, ArrayList<CalendarEvent> jsonArrayList, boolean collapse)
+    @Override
+    public void writeICalEvents(List<URL> iCalURLs, Date intervalStart, Date intervalEnd, boolean collapse,
+        Writer writer) throws Exception
     {
-        for (CalendarComponent eventComponent : events) {
-            try {
-                VEvent event = (VEvent) eventComponent;
-                CalendarEvent jsonMap = new CalendarEvent();
-                if (!eventProcessor.addEventPeriod(event, jsonMap, zoneId)) {
-                    continue;
-                }
-                eventProcessor.addBasicEventProperties(jsonMap, event);
-                // If the interval dates are null and the collapse flag is false, we don't check for recurring events.
-                // Done to maintain backwards compatibility.
-                if (!collapse && (icalIntervalStart == null || icalIntervalEnd == null)) {
-                    jsonArrayList.add(jsonMap);
-                    continue;
-                }
-                recurrenceProcessor.checkRRule(zoneId, icalIntervalStart, icalIntervalEnd, jsonArrayList, collapse,
-                    event, jsonMap);
-            } catch (Exception e) {
-                logger.error("Error while processing a calendar event. Cause:", e);
-            }
-        }
+        mergedFeedEventsWriter.writeEvents(iCalURLs, intervalStart, intervalEnd, collapse, writer);
     }
 
-    /**
-     * Sort the events to start with the recurrent ones, so that any modified instance of a recurrence is added
-     * correctly.
-     */
-    private List<CalendarComponent> getSortedEvents(List<CalendarComponent> events)
+    @Override
+    public String getICalEvents(URL iCalURL, java.util.Date intervalStart, java.util.Date intervalEnd) throws Exception
     {
-        return events.stream().sorted((c1, c2) -> {
-            boolean c1HasRRule = c1.getProperty(Property.RRULE) != null;
-            boolean c2HasRRule = c2.getProperty(Property.RRULE) != null;
+        return getICalEvents(iCalURL, intervalStart, intervalEnd, false);
+    }
 
-            if (c1HasRRule && !c2HasRRule) {
-                return -1;
-            } else if (!c1HasRRule && c2HasRRule) {
-                return 1;
-            } else {
-                return 0;
-            }
-        }).collect(Collectors.toList());
+    @Override
+    public List<CalendarEvent> getICalEventsFromFile(byte[] iCalFile, java.util.Date intervalStart,
+        java.util.Date intervalEnd, boolean collapse) throws Exception
+    {
+        return feedEventsProcessor.getEvents(iCalFile, intervalStart, intervalEnd, collapse);
     }
 }
@@ -0,0 +1,239 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.fullcalendar.internal;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+import javax.inject.Inject;
+import javax.inject.Singleton;
+
+import org.slf4j.Logger;
+import org.xwiki.component.annotation.Component;
+import org.xwiki.fullcalendar.internal.feed.FeedSnapshot;
+import org.xwiki.fullcalendar.internal.metrics.FeedMetrics;
+import org.xwiki.fullcalendar.internal.metrics.FeedMetricsRegistry;
+import org.xwiki.fullcalendar.internal.metrics.RequestMetrics;
+import org.xwiki.fullcalendar.internal.util.CalendarEventsBuilder;
+import org.xwiki.fullcalendar.internal.util.CalendarEventsBuilder.EventBatchConsumer;
+import org.xwiki.fullcalendar.internal.util.CalendarReader;
+import org.xwiki.fullcalendar.internal.util.DateProcessor;
+import org.xwiki.fullcalendar.internal.util.EventProcessingContext;
+import org.xwiki.fullcalendar.internal.util.ExpansionBudget;
+import org.xwiki.fullcalendar.internal.util.OverrideIndex;
+import org.xwiki.fullcalendar.internal.util.StringInterner;
+import org.xwiki.fullcalendar.model.CalendarEvent;
+
+import net.fortuna.ical4j.model.component.CalendarComponent;
+
+/**
+ * Computes the events of a parsed feed in a requested interval, within the configured limits on the number of
+ * generated instances, and records the time spent in the feed metrics.
+ *
+ * @version $Id$
+ * @since 2.5.5
+ */
+@Component(roles = FeedEventsProcessor.class)
+@Singleton
+public class FeedEventsProcessor
+{
+    @Inject
+    private CalendarEventsBuilder calendarEventsBuilder;
+
+    @Inject
+    private DateProcessor dateProcessor;
+
+    @Inject
+    private FeedMetricsRegistry feedMetricsRegistry;
+
+    @Inject
+    private FullCalendarConfiguration configuration;
+
+    @Inject
+    private Logger logger;
+
+    /**
+     * Compute the events of a feed in the given interval and pass them to the consumer a few at a time, as they are
+     * computed, except when the recurring events are collapsed. The time spent in the consumer is recorded as the
+     * serialization time of the request.
+     *
+     * @param snapshot the parsed feed
+     * @param intervalStart the start of the interval, {@code null} for no limit
+     * @param intervalEnd the end of the interval, {@code null} for no limit
+     * @param collapse expands the recurring events if {@code false}, or collapses them into the parent otherwise
+     * @param uids the UIDs of the events to compute, {@code null} to compute all the events
+     * @param consumer receives the events
+     * @throws Exception if the feed cannot be parsed or the consumer fails
+     */
+    public void processEvents(FeedSnapshot snapshot, Date intervalStart, Date intervalEnd, boolean collapse,
+        Set<String> uids, EventBatchConsumer consumer) throws Exception
+    {
+        FeedMetrics metrics = this.feedMetricsRegistry.get(snapshot.getUrl());
+        CalendarReader calendarReader = getCalendarReader(snapshot, intervalStart, intervalEnd);
+
+        long start = System.nanoTime();
+        List<CalendarComponent> events = getEventsInInterval(snapshot, calendarReader, intervalStart, intervalEnd);
+        if (uids != null) {
+            // The modified instances have the UID of their recurring event, so they are kept together.
+            events = events.stream().filter(event -> uids.contains(OverrideIndex.getUid(event)))
+                .collect(Collectors.toList());
+        }
+        OverrideIndex overrideIndex = new OverrideIndex(events);
+        EventProcessingContext context =
+            createContext(calendarReader.getZoneId(), intervalStart, intervalEnd, collapse, snapshot, overrideIndex);
+        RequestMetrics requestMetrics = new RequestMetrics();
+        EventBatchConsumer measuredConsumer = batch -> {
+            long serializationStart = System.nanoTime();
+            consumer.accept(batch);
+            requestMetrics.addSerialization(System.nanoTime() - serializationStart, batch.size());
+        };
+        if (collapse) {
+            // The modified instances are attached to their recurrent event, so all the events are needed first.
+            measuredConsumer.accept(this.calendarEventsBuilder.getCalendarEvents(overrideIndex, context));
+        } else {
+            this.calendarEventsBuilder.expandEvents(events, context, measuredConsumer);
+        }
+        long serializationNanos = requestMetrics.getSerializationNanos();
+        metrics.recordRequest(System.nanoTime() - start - serializationNanos, serializationNanos,
+            requestMetrics.getInstanceCount());
+        logTruncation(context.getBudget(), snapshot.getUrl());
+    }
+
+    /**
+     * Get the parsed feed of a snapshot, recording the parse time when the feed is parsed for each request.
+     *
+     * @param snapshot the parsed feed
+     * @param intervalStart the start of the requested interval, {@code null} for no limit
+     * @param intervalEnd the end of the requested interval, {@code null} for no limit
+     * @return the parsed feed, limited to the interval when the feed is parsed for each request
+     * @throws Exception if the feed cannot be parsed
+     */
+    public CalendarReader getCalendarReader(FeedSnapshot snapshot, Date intervalStart, Date intervalEnd)
+        throws Exception
+    {
+        long parseStart = System.nanoTime();
+        CalendarReader calendarReader = snapshot.getCalendarReader(intervalStart, intervalEnd);
+        if (snapshot.isStreamed()) {
+            this.feedMetricsRegistry.get(snapshot.getUrl()).recordParse(System.nanoTime() - parseStart,
+                calendarReader.getEvents().size());
+        }
+        return calendarReader;
+    }
+
+    /**
+     * @param snapshot the parsed feed
+     * @param calendarReader the parsed feed of the snapshot for the interval, see
+     *     {@link #getCalendarReader(FeedSnapshot, Date, Date)}
+     * @param intervalStart the start of the interval, {@code null} for no limit
+     * @param intervalEnd the end of the interval, {@code null} for no limit
+     * @param collapse expands the recurring events if {@code false}, or collapses them into the parent otherwise
+     * @return the events of the feed in the interval
+     */
+    public List<CalendarEvent> getEvents(FeedSnapshot snapshot, CalendarReader calendarReader, Date intervalStart,
+        Date intervalEnd, boolean collapse)
+    {
+        OverrideIndex overrideIndex =
+            new OverrideIndex(getEventsInInterval(snapshot, calendarReader, intervalStart, intervalEnd));
+        EventProcessingContext context =
+            createContext(calendarReader.getZoneId(), intervalStart, intervalEnd, collapse, snapshot, overrideIndex);
+        List<CalendarEvent> calendarEvents = this.calendarEventsBuilder.getCalendarEvents(overrideIndex, context);
+        logTruncation(context.getBudget(), snapshot.getUrl());
+        return calendarEvents;
+    }
+
+    /**
+     * @param iCalFile the content of an iCal file
+     * @param intervalStart the start of the interval, {@code null} for no limit
+     * @param intervalEnd the end of the interval, {@code null} for no limit
+     * @param collapse expands the recurring events if {@code false}, or collapses them into the parent otherwise
+     * @return the events of the file in the interval
+     * @throws Exception if the file cannot be parsed
+     */
+    public List<CalendarEvent> getEvents(byte[] iCalFile, Date intervalStart, Date intervalEnd, boolean collapse)
+        throws Exception
+    {
+        // Stream the file content through the parser to build only the events of the requested interval.
+        CalendarReader calendarReader = new CalendarReader(
+            new InputStreamReader(new ByteArrayInputStream(iCalFile), StandardCharsets.UTF_8), intervalStart,
+            intervalEnd);
+        OverrideIndex overrideIndex = new OverrideIndex(calendarReader.getEvents());
+        EventProcessingContext context =
+            createContext(calendarReader.getZoneId(), intervalStart, intervalEnd, collapse, null, overrideIndex);
+        List<CalendarEvent> calendarEvents = this.calendarEventsBuilder.getCalendarEvents(overrideIndex, context);
+        logTruncation(context.getBudget(), "iCal file");
+        return calendarEvents;
+    }
+
+    /**
+     * Get the events of a feed that can occur in the given interval, using the index of the snapshot when available.
+     */
+    private List<CalendarComponent> getEventsInInterval(FeedSnapshot snapshot, CalendarReader calendarReader,
+        Date intervalStart, Date intervalEnd)
+    {
+        if (snapshot.getEventIndex() == null || intervalStart == null || intervalEnd == null) {
+            return calendarReader.getEvents();
+        }
+        return snapshot.getEventIndex().getEvents(intervalStart.getTime(), intervalEnd.getTime());
+    }
+
+    /**
+     * @param snapshot the parsed feed, {@code null} if the events don't come from a feed
+     */
+    private EventProcessingContext createContext(ZoneId zoneId, Date intervalStart, Date intervalEnd,
+        boolean collapse, FeedSnapshot snapshot, OverrideIndex overrideIndex)
+    {
+        // The expanded recurrences skip the instances replaced by a modified instance.
+        Map<String, Set<Long>> overriddenStarts =
+            collapse ? Collections.emptyMap() : overrideIndex.getOverriddenStarts(zoneId, this.dateProcessor);
+        // The caches of a feed are shared by all its requests.
+        return new EventProcessingContext(zoneId, toLocalDateTime(intervalStart, zoneId),
+            toLocalDateTime(intervalEnd, zoneId), collapse, createExpansionBudget(),
+            snapshot != null ? snapshot.getExpansionCache() : null, overriddenStarts,
+            snapshot != null ? snapshot.getStringInterner() : new StringInterner());
+    }
+
+    private ExpansionBudget createExpansionBudget()
+    {
+        return new ExpansionBudget(this.configuration.getMaxInstancesPerEvent(),
+            this.configuration.getMaxInstancesPerRequest());
+    }
+
+    private LocalDateTime toLocalDateTime(Date date, ZoneId zoneId)
+    {
+        return date == null ? null : this.dateProcessor.toLocalDateTime(date, zoneId);
+    }
+
+    private void logTruncation(ExpansionBudget budget, Object source)
+    {
+        if (budget.isExhausted()) {
+            this.logger.warn("Some recurring event instances from [{}] were dropped because they exceed the "
+                + "configured limits.", source);
+        }
+    }
+}
@@ -0,0 +1,213 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.fullcalendar.internal;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.Date;
+import java.util.Set;
+import java.util.TimeZone;
+import java.util.function.Consumer;
+
+import javax.inject.Inject;
+import javax.inject.Singleton;
+
+import org.apache.commons.codec.digest.DigestUtils;
+import org.xwiki.component.annotation.Component;
+import org.xwiki.fullcalendar.internal.feed.FeedChangeLog;
+import org.xwiki.fullcalendar.internal.feed.FeedSnapshot;
+import org.xwiki.fullcalendar.internal.util.SizeBoundedLruMap;
+import org.xwiki.fullcalendar.model.CalendarEvent;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SerializationFeature;
+
+/**
+ * Writes the events of a feed as JSON, as they are computed, along with the validator of the written events.
+ *
+ * @version $Id$
+ * @since 2.5.5
+ */
+@Component(roles = FeedEventsWriter.class)
+@Singleton
+public class FeedEventsWriter
+{
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+
+    private static final ObjectWriter EVENT_WRITER =
+        MAPPER.writerFor(CalendarEvent.class).without(SerializationFeature.FLUSH_AFTER_WRITE_VALUE);
+
+    private static final int MAX_FAILED_ETAGS = 1000;
+
+    /**
+     * The validators sent with events whose writing failed, so that a client which kept the partial response, because
+     * it was already sent, doesn't get it validated. Guarded by itself.
+     */
+    private final SizeBoundedLruMap<Boolean> failedETags = new SizeBoundedLruMap<>(failed -> 1);
+
+    @Inject
+    private FeedEventsProcessor feedEventsProcessor;
+
+    /**
+     * Write the events of a feed in the given interval as a JSON array.
+     *
+     * @param snapshot the parsed feed
+     * @param intervalStart the start of the interval, {@code null} for no limit
+     * @param intervalEnd the end of the interval, {@code null} for no limit
+     * @param collapse expands the recurring events if {@code false}, or collapses them into the parent otherwise
+     * @param writer receives the JSON, and is left open
+     * @throws Exception if the feed cannot be parsed or the events cannot be written
+     */
+    public void writeEvents(FeedSnapshot snapshot, Date intervalStart, Date intervalEnd, boolean collapse,
+        Writer writer) throws Exception
+    {
+        try (JsonGenerator generator = createGenerator(writer)) {
+            writeEvents(snapshot, intervalStart, intervalEnd, collapse, null, generator);
+        }
+    }
+
+    /**
+     * Write the events of a feed in the given interval as a JSON array, unless the client already has them.
+     *
+     * @param snapshot the parsed feed
+     * @param intervalStart the start of the interval, {@code null} for no limit
+     * @param intervalEnd the end of the interval, {@code null} for no limit
+     * @param collapse expands the recurring events if {@code false}, or collapses them into the parent otherwise
+     * @param ifNoneMatch the validators of the events the client has, {@code null} if none
+     * @param eTagHandler receives the validator of the events, before they are written
+     * @param writer receives the JSON, and is left open
+     * @return {@code false} if the client already has the events, in which case nothing is written
+     * @throws Exception if the feed cannot be parsed or the events cannot be written
+     */
+    public boolean writeEvents(FeedSnapshot snapshot, Date intervalStart, Date intervalEnd, boolean collapse,
+        String ifNoneMatch, Consumer<String> eTagHandler, Writer writer) throws Exception
+    {
+        // The dates are serialized in the default time zone of the JVM.
+        String version = String.join("|", snapshot.getContentHash(), String.valueOf(toEpochMillis(intervalStart)),
+            String.valueOf(toEpochMillis(intervalEnd)), String.valueOf(collapse), TimeZone.getDefault().getID());
+        String eTag = '"' + DigestUtils.sha256Hex(version) + '"';
+        eTagHandler.accept(eTag);
+        synchronized (this.failedETags) {
+            if (ifNoneMatch != null && ifNoneMatch.contains(eTag) && this.failedETags.get(eTag) == null) {
+                return false;
+            }
+        }
+        try {
+            writeEvents(snapshot, intervalStart, intervalEnd, collapse, writer);
+        } catch (Exception e) {
+            synchronized (this.failedETags) {
+                this.failedETags.put(eTag, Boolean.TRUE, MAX_FAILED_ETAGS);
+            }
+            throw e;
+        }
+        synchronized (this.failedETags) {
+            this.failedETags.remove(eTag);
+        }
+        return true;
+    }
+
+    /**
+     * Write the events of a feed that changed since the given version of the feed, along with the UIDs of the events
+     * that changed, and the current version of the feed.
+     *
+     * @param snapshot the parsed feed
+     * @param intervalStart the start of the interval, {@code null} for no limit
+     * @param intervalEnd the end of the interval, {@code null} for no limit
+     * @param collapse expands the recurring events if {@code false}, or collapses them into the parent otherwise
+     * @param syncToken the version of the feed the client has, {@code null} to write all the events
+     * @param writer receives the JSON, and is left open
+     * @throws Exception if the feed cannot be parsed or the events cannot be written
+     */
+    public void writeEventChanges(FeedSnapshot snapshot, Date intervalStart, Date intervalEnd, boolean collapse,
+        String syncToken, Writer writer) throws Exception
+    {
+        FeedChangeLog changeLog = snapshot.getChangeLog();
+        Set<String> changedUids = syncToken == null ? null : changeLog.getChangedUids(syncToken);
+        try (JsonGenerator generator = createGenerator(writer)) {
+            generator.writeStartObject();
+            generator.writeStringField("syncToken", changeLog.getCurrentVersion());
+            generator.writeBooleanField("full", changedUids == null);
+            generator.writeArrayFieldStart("removed");
+            if (changedUids != null) {
+                for (String uid : changedUids) {
+                    generator.writeString(uid);
+                }
+            }
+            generator.writeEndArray();
+            generator.writeFieldName("events");
+            if (changedUids == null || !changedUids.isEmpty()) {
+                writeEvents(snapshot, intervalStart, intervalEnd, collapse, changedUids, generator);
+            } else {
+                generator.writeStartArray();
+                generator.writeEndArray();
+            }
+            generator.writeEndObject();
+        }
+    }
+
+    /**
+     * Create a generator writing to the given writer. The writer is left open since it belongs to the caller, and the
+     * JSON content is not completed when the generator is closed after a failure, so that a partial list of events is
+     * not mistaken for a complete one.
+     *
+     * @param writer the writer receiving the JSON
+     * @return the generator
+     * @throws IOException if the generator cannot be created
+     */
+    public JsonGenerator createGenerator(Writer writer) throws IOException
+    {
+        JsonGenerator generator = MAPPER.getFactory().createGenerator(writer);
+        generator.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+        generator.disable(JsonGenerator.Feature.AUTO_CLOSE_JSON_CONTENT);
+        return generator;
+    }
+
+    /**
+     * @param generator the generator receiving the event
+     * @param event the event to write
+     * @throws IOException if the event cannot be written
+     */
+    public void writeEvent(JsonGenerator generator, CalendarEvent event) throws IOException
+    {
+        EVENT_WRITER.writeValue(generator, event);
+    }
+
+    /**
+     * @param uids the UIDs of the events to write, {@code null} to write all the events
+     */
+    private void writeEvents(FeedSnapshot snapshot, Date intervalStart, Date intervalEnd, boolean collapse,
+        Set<String> uids, JsonGenerator generator) throws Exception
+    {
+        generator.writeStartArray();
+        this.feedEventsProcessor.processEvents(snapshot, intervalStart, intervalEnd, collapse, uids, events -> {
+            for (CalendarEvent event : events) {
+                writeEvent(generator, event);
+            }
+        });
+        generator.writeEndArray();
+    }
+
+    private Long toEpochMillis(Date date)
+    {
+        return date == null ? null : date.getTime();
+    }
+}
@@ -0,0 +1,281 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.fullcalendar.internal;
+
+import javax.inject.Inject;
+import javax.inject.Named;
+import javax.inject.Provider;
+import javax.inject.Singleton;
+
+import org.xwiki.component.annotation.Component;
+import org.xwiki.configuration.ConfigurationSource;
+
+/**
+ * Configuration options of the Full Calendar macro, read from {@code xwiki.properties}.
+ *
+ * @version $Id$
+ * @since 2.5.5
+ */
+@Component(roles = FullCalendarConfiguration.class)
+@Singleton
+public class FullCalendarConfiguration
+{
+    private static final String PREFIX = "fullcalendar.";
+
+    private static final long DEFAULT_FEED_CACHE_MAX_BYTES = 256L * 1024 * 1024;
+
+    private static final long DEFAULT_SNAPSHOT_CACHE_MAX_BYTES = 256L * 1024 * 1024;
+
+    private static final long DEFAULT_REFRESH_INTERVAL = 300;
+
+    private static final int DEFAULT_REFRESH_THREADS = 2;
+
+    private static final long DEFAULT_REFRESH_IDLE_TIMEOUT = 24L * 60 * 60;
+
+    private static final int DEFAULT_REFRESH_MAX_FEEDS = 1000;
+
+    private static final int DEFAULT_METRICS_MAX_FEEDS = 1000;
+
+    private static final long DEFAULT_STREAMING_MIN_FEED_BYTES = 32L * 1024 * 1024;
+
+    private static final int DEFAULT_MAX_INSTANCES_PER_EVENT = 10000;
+
+    private static final int DEFAULT_MAX_INSTANCES_PER_REQUEST = 100000;
+
+    private static final long DEFAULT_RECURRENCE_CACHE_MAX_BYTES = 4L * 1024 * 1024;
+
+    private static final int DEFAULT_PARALLEL_MIN_EVENTS = 2000;
+
+    private static final int DEFAULT_MULTI_FEED_THREADS = 8;
+
+    private static final int DEFAULT_FETCH_THREADS = 16;
+
+    private static final int DEFAULT_FETCH_MAX_PER_HOST = 4;
+
+    private static final int DEFAULT_FETCH_CONNECT_TIMEOUT = 10000;
+
+    private static final int DEFAULT_FETCH_READ_TIMEOUT = 30000;
+
+    private static final long DEFAULT_FETCH_DEADLINE = 60000;
+
+    private static final boolean DEFAULT_PERSISTENCE_ENABLED = true;
+
+    private static final int DEFAULT_SYNC_MAX_VERSIONS = 20;
+
+    private static final long DEFAULT_OBJECTS_MAX_DURATION = 366L * 24 * 60;
+
+    @Inject
+    @Named("xwikiproperties")
+    private Provider<ConfigurationSource> configuration;
+
+    /**
+     * @return the maximum number of bytes of raw iCal feed content kept in memory, across all the feeds
+     */
+    public long getFeedCacheMaxBytes()
+    {
+        return this.configuration.get().getProperty(PREFIX + "feedCache.maxBytes", DEFAULT_FEED_CACHE_MAX_BYTES);
+    }
+
+    /**
+     * @return the maximum memory used by the parsed calendars kept in memory, estimated from the size of the feeds
+     *     they were parsed from
+     */
+    public long getSnapshotCacheMaxBytes()
+    {
+        return this.configuration.get().getProperty(PREFIX + "snapshotCache.maxBytes",
+            DEFAULT_SNAPSHOT_CACHE_MAX_BYTES);
+    }
+
+    /**
+     * @return the number of seconds between two background refreshes of a feed, or {@code 0} to disable the
+     *     background refresh and revalidate the feeds on each request
+     */
+    public long getRefreshInterval()
+    {
+        return this.configuration.get().getProperty(PREFIX + "refresh.interval", DEFAULT_REFRESH_INTERVAL);
+    }
+
+    /**
+     * @return the number of threads used to refresh the feeds in the background
+     */
+    public int getRefreshThreads()
+    {
+        return this.configuration.get().getProperty(PREFIX + "refresh.threads", DEFAULT_REFRESH_THREADS);
+    }
+
+    /**
+     * @return the number of seconds after which a feed that was not requested anymore stops being refreshed
+     */
+    public long getRefreshIdleTimeout()
+    {
+        return this.configuration.get().getProperty(PREFIX + "refresh.idleTimeout", DEFAULT_REFRESH_IDLE_TIMEOUT);
+    }
+
+    /**
+     * @return the maximum number of feeds refreshed in the background; the least recently requested feeds stop being
+     *     refreshed beyond it
+     */
+    public int getRefreshMaxFeeds()
+    {
+        return this.configuration.get().getProperty(PREFIX + "refresh.maxFeeds", DEFAULT_REFRESH_MAX_FEEDS);
+    }
+
+    /**
+     * @return the maximum number of feeds whose metrics are exposed through JMX; the metrics of the least recently
+     *     requested feeds are dropped beyond it
+     */
+    public int getMetricsMaxFeeds()
+    {
+        return this.configuration.get().getProperty(PREFIX + "metrics.maxFeeds", DEFAULT_METRICS_MAX_FEEDS);
+    }
+
+    /**
+     * @return the size from which a feed is not kept parsed in memory anymore, but parsed on each request keeping only
+     *     the events of the requested interval, or a negative value to always keep the feeds parsed
+     */
+    public long getStreamingMinFeedBytes()
+    {
+        return this.configuration.get().getProperty(PREFIX + "streaming.minFeedBytes",
+            DEFAULT_STREAMING_MIN_FEED_BYTES);
+    }
+
+    /**
+     * @return the maximum number of instances generated for a single recurring event in a request
+     */
+    public int getMaxInstancesPerEvent()
+    {
+        return this.configuration.get().getProperty(PREFIX + "recurrence.maxInstancesPerEvent",
+            DEFAULT_MAX_INSTANCES_PER_EVENT);
+    }
+
+    /**
+     * @return the maximum number of recurring event instances generated for a request
+     */
+    public int getMaxInstancesPerRequest()
+    {
+        return this.configuration.get().getProperty(PREFIX + "recurrence.maxInstancesPerRequest",
+            DEFAULT_MAX_INSTANCES_PER_REQUEST);
+    }
+
+    /**
+     * @return the maximum memory used to cache the expanded occurrences of the recurring events of a feed, {@code 0}
+     *     to disable the cache
+     */
+    public long getRecurrenceCacheMaxBytes()
+    {
+        return this.configuration.get().getProperty(PREFIX + "recurrence.cacheMaxBytes",
+            DEFAULT_RECURRENCE_CACHE_MAX_BYTES);
+    }
+
+    /**
+     * @return the minimum number of events of a calendar to process them in parallel, {@code 0} to always process
+     *     them sequentially
+     */
+    public int getParallelMinEvents()
+    {
+        return this.configuration.get().getProperty(PREFIX + "parallel.minEvents", DEFAULT_PARALLEL_MIN_EVENTS);
+    }
+
+    /**
+     * @return the number of threads used to process the events of large calendars
+     */
+    public int getParallelThreads()
+    {
+        return this.configuration.get().getProperty(PREFIX + "parallel.threads",
+            Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * @return the maximum number of feeds fetched and processed at the same time when several feeds are requested
+     *     together, for all the requests
+     */
+    public int getMultiFeedThreads()
+    {
+        return this.configuration.get().getProperty(PREFIX + "multiFeed.threads", DEFAULT_MULTI_FEED_THREADS);
+    }
+
+    /**
+     * @return the number of threads downloading the feeds, for all the requests
+     */
+    public int getFetchThreads()
+    {
+        return this.configuration.get().getProperty(PREFIX + "fetch.threads", DEFAULT_FETCH_THREADS);
+    }
+
+    /**
+     * @return the maximum number of feeds downloaded at the same time from the same host, 0 for no limit
+     */
+    public int getFetchMaxPerHost()
+    {
+        return this.configuration.get().getProperty(PREFIX + "fetch.maxPerHost", DEFAULT_FETCH_MAX_PER_HOST);
+    }
+
+    /**
+     * @return the time to wait for the connection to a feed server, in milliseconds, 0 for no limit
+     */
+    public int getFetchConnectTimeout()
+    {
+        return this.configuration.get().getProperty(PREFIX + "fetch.connectTimeout", DEFAULT_FETCH_CONNECT_TIMEOUT);
+    }
+
+    /**
+     * @return the time to wait for data from a feed server, in milliseconds, 0 for no limit
+     */
+    public int getFetchReadTimeout()
+    {
+        return this.configuration.get().getProperty(PREFIX + "fetch.readTimeout", DEFAULT_FETCH_READ_TIMEOUT);
+    }
+
+    /**
+     * @return the maximum time a request waits for its feeds to be retrieved, in milliseconds
+     */
+    public long getFetchDeadline()
+    {
+        return this.configuration.get().getProperty(PREFIX + "fetch.deadline", DEFAULT_FETCH_DEADLINE);
+    }
+
+    /**
+     * @return {@code true} if the downloaded feeds are stored in the permanent directory, to serve them right after a
+     *     restart while they are revalidated in the background
+     */
+    public boolean isPersistenceEnabled()
+    {
+        return this.configuration.get().getProperty(PREFIX + "persistence.enabled", DEFAULT_PERSISTENCE_ENABLED);
+    }
+
+    /**
+     * @return the number of recent versions of each feed for which the clients can ask only the events that changed
+     *     since then; older clients receive all the events again
+     */
+    public int getSyncMaxVersions()
+    {
+        return this.configuration.get().getProperty(PREFIX + "sync.maxVersions", DEFAULT_SYNC_MAX_VERSIONS);
+    }
+
+    /**
+     * @return the longest duration, in minutes, of the events stored as objects with a duration field: the events
+     *     starting earlier than this before the requested interval are not looked for, or a negative value to look for
+     *     all of them
+     */
+    public long getObjectsMaxDuration()
+    {
+        return this.configuration.get().getProperty(PREFIX + "objects.maxDuration", DEFAULT_OBJECTS_MAX_DURATION);
+    }
+}
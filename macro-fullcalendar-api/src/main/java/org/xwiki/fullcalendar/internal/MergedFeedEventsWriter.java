@@ -0,0 +1,193 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.fullcalendar.internal;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.PriorityQueue;
+import java.util.concurrent.Callable;
+
+import javax.inject.Inject;
+import javax.inject.Singleton;
+
+import org.xwiki.component.annotation.Component;
+import org.xwiki.fullcalendar.internal.feed.FeedLoadExecutor;
+import org.xwiki.fullcalendar.internal.feed.FeedSnapshot;
+import org.xwiki.fullcalendar.internal.feed.FeedSnapshotProvider;
+import org.xwiki.fullcalendar.internal.metrics.FeedMetrics;
+import org.xwiki.fullcalendar.internal.metrics.FeedMetricsRegistry;
+import org.xwiki.fullcalendar.internal.util.CalendarReader;
+import org.xwiki.fullcalendar.model.CalendarEvent;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+
+/**
+ * Writes the events of several feeds as a single JSON array sorted by start date. The feeds are loaded concurrently.
+ *
+ * @version $Id$
+ * @since 2.5.5
+ */
+@Component(roles = MergedFeedEventsWriter.class)
+@Singleton
+public class MergedFeedEventsWriter
+{
+    /**
+     * The key of the {@link CalendarEvent#getMeta() meta} property holding the URL of the feed of an event.
+     */
+    private static final String SOURCE_META = "source";
+
+    @Inject
+    private FeedSnapshotProvider feedSnapshotProvider;
+
+    @Inject
+    private FeedEventsProcessor feedEventsProcessor;
+
+    @Inject
+    private FeedEventsWriter feedEventsWriter;
+
+    @Inject
+    private FeedLoadExecutor feedLoadExecutor;
+
+    @Inject
+    private FeedMetricsRegistry feedMetricsRegistry;
+
+    /**
+     * The events of a feed, to be merged with the events of other feeds.
+     */
+    private static final class FeedEvents
+    {
+        private final List<CalendarEvent> events;
+
+        private final FeedMetrics metrics;
+
+        private final long expansionNanos;
+
+        FeedEvents(List<CalendarEvent> events, FeedMetrics metrics, long expansionNanos)
+        {
+            this.events = events;
+            this.metrics = metrics;
+            this.expansionNanos = expansionNanos;
+        }
+    }
+
+    /**
+     * Write the events of several feeds in the given interval as a single JSON array sorted by start date. Each event
+     * holds the URL of its feed in its meta properties. The feeds that cannot be loaded are skipped.
+     *
+     * @param iCalURLs the URLs of the feeds
+     * @param intervalStart the start of the interval, {@code null} for no limit
+     * @param intervalEnd the end of the interval, {@code null} for no limit
+     * @param collapse expands the recurring events if {@code false}, or collapses them into the parent otherwise
+     * @param writer receives the JSON, and is left open
+     * @throws Exception if the events cannot be written
+     */
+    public void writeEvents(List<URL> iCalURLs, Date intervalStart, Date intervalEnd, boolean collapse,
+        Writer writer) throws Exception
+    {
+        List<Callable<FeedEvents>> loads = new ArrayList<>(iCalURLs.size());
+        for (URL iCalURL : iCalURLs) {
+            loads.add(() -> getFeedEvents(iCalURL, intervalStart, intervalEnd, collapse));
+        }
+        List<FeedEvents> feeds = this.feedLoadExecutor.loadAll(iCalURLs, loads);
+        feeds.removeIf(Objects::isNull);
+
+        long start = System.nanoTime();
+        int count;
+        try (JsonGenerator generator = this.feedEventsWriter.createGenerator(writer)) {
+            generator.writeStartArray();
+            count = writeMergedEvents(feeds, generator);
+            generator.writeEndArray();
+        }
+        long serializationNanos = System.nanoTime() - start;
+        for (FeedEvents feed : feeds) {
+            // The events of all the feeds are written together, so share the time according to their number.
+            long feedSerializationNanos = count > 0 ? serializationNanos * feed.events.size() / count : 0;
+            feed.metrics.recordRequest(feed.expansionNanos, feedSerializationNanos, feed.events.size());
+        }
+    }
+
+    /**
+     * Get the events of a feed in the given interval, tagged with their source and sorted by start date.
+     */
+    private FeedEvents getFeedEvents(URL iCalURL, Date intervalStart, Date intervalEnd, boolean collapse)
+        throws Exception
+    {
+        FeedSnapshot snapshot = this.feedSnapshotProvider.getCurrentFeedSnapshot(iCalURL);
+        CalendarReader calendarReader =
+            this.feedEventsProcessor.getCalendarReader(snapshot, intervalStart, intervalEnd);
+
+        long start = System.nanoTime();
+        List<CalendarEvent> calendarEvents =
+            this.feedEventsProcessor.getEvents(snapshot, calendarReader, intervalStart, intervalEnd, collapse);
+        Map<String, Object> sourceMeta = Collections.singletonMap(SOURCE_META, iCalURL.toExternalForm());
+        for (CalendarEvent calendarEvent : calendarEvents) {
+            if (calendarEvent.getMeta() == null) {
+                calendarEvent.setMeta(sourceMeta);
+            } else {
+                Map<String, Object> meta = new HashMap<>(calendarEvent.getMeta());
+                meta.putAll(sourceMeta);
+                calendarEvent.setMeta(meta);
+            }
+        }
+        calendarEvents.sort(Comparator.comparingLong(CalendarEvent::getStartMillis));
+        return new FeedEvents(calendarEvents, this.feedMetricsRegistry.get(snapshot.getUrl()),
+            System.nanoTime() - start);
+    }
+
+    /**
+     * Write the events of several feeds, each sorted by start date, in a single list sorted by start date. The events
+     * starting at the same time are written in the order of their feeds.
+     *
+     * @return the number of written events
+     */
+    private int writeMergedEvents(List<FeedEvents> feeds, JsonGenerator generator) throws IOException
+    {
+        int[] positions = new int[feeds.size()];
+        PriorityQueue<Integer> queue = new PriorityQueue<>(Math.max(1, feeds.size()),
+            Comparator.<Integer>comparingLong(feed -> feeds.get(feed).events.get(positions[feed]).getStartMillis())
+                .thenComparingInt(Integer::intValue));
+        for (int feed = 0; feed < feeds.size(); feed++) {
+            if (!feeds.get(feed).events.isEmpty()) {
+                queue.add(feed);
+            }
+        }
+        int count = 0;
+        while (!queue.isEmpty()) {
+            int feed = queue.poll();
+            List<CalendarEvent> events = feeds.get(feed).events;
+            this.feedEventsWriter.writeEvent(generator, events.get(positions[feed]));
+            count++;
+            positions[feed]++;
+            if (positions[feed] < events.size()) {
+                queue.add(feed);
+            }
+        }
+        return count;
+    }
+}
@@ -0,0 +1,285 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.fullcalendar.internal;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import javax.inject.Inject;
+import javax.inject.Named;
+import javax.inject.Provider;
+import javax.inject.Singleton;
+
+import org.apache.commons.lang3.StringUtils;
+import org.xwiki.component.annotation.Component;
+import org.xwiki.fullcalendar.model.ObjectEvent;
+import org.xwiki.model.EntityType;
+import org.xwiki.model.reference.DocumentReference;
+import org.xwiki.model.reference.DocumentReferenceResolver;
+import org.xwiki.model.reference.EntityReferenceProvider;
+import org.xwiki.query.Query;
+import org.xwiki.query.QueryException;
+import org.xwiki.query.QueryManager;
+import org.xwiki.rendering.syntax.Syntax;
+import org.xwiki.security.authorization.ContextualAuthorizationManager;
+import org.xwiki.security.authorization.Right;
+
+import com.xpn.xwiki.XWikiContext;
+import com.xpn.xwiki.doc.XWikiDocument;
+import com.xpn.xwiki.objects.BaseProperty;
+import com.xpn.xwiki.objects.DateProperty;
+import com.xpn.xwiki.objects.classes.BaseClass;
+import com.xpn.xwiki.objects.classes.PropertyClass;
+
+/**
+ * Reads the events stored as objects in wiki pages with a single query, restricted to the requested interval and
+ * projected on the fields the calendar needs, so that the pages holding the events don't need to be loaded.
+ *
+ * @version $Id$
+ * @since 2.5.5
+ */
+@Component(roles = ObjectEventSource.class)
+@Singleton
+public class ObjectEventSource
+{
+    /**
+     * Margin added around the interval, since the events are filtered in the time zone of the server while the
+     * interval is in the time zone of the user.
+     */
+    private static final long INTERVAL_MARGIN = TimeUnit.DAYS.toMillis(1);
+
+    private static final long MINUTE = TimeUnit.MINUTES.toMillis(1);
+
+    /**
+     * The properties holding a single value, which can be read from the database as the duration of the events.
+     */
+    private static final Set<String> DURATION_PROPERTIES =
+        Set.of("IntegerProperty", "LongProperty", "FloatProperty", "DoubleProperty", "StringProperty");
+
+    private static final String INTERVAL_START = "intervalStart";
+
+    private static final String INTERVAL_END = "intervalEnd";
+
+    /**
+     * The maximum number of documents whose modification date is read with a single query.
+     */
+    private static final int MODIFICATION_DATES_BATCH = 1000;
+
+    @Inject
+    private Provider<XWikiContext> xcontextProvider;
+
+    @Inject
+    private QueryManager queryManager;
+
+    @Inject
+    private ContextualAuthorizationManager authorization;
+
+    @Inject
+    @Named("current")
+    private DocumentReferenceResolver<String> documentReferenceResolver;
+
+    @Inject
+    private EntityReferenceProvider entityReferenceProvider;
+
+    @Inject
+    private FullCalendarConfiguration configuration;
+
+    /**
+     * @param className the class of the event objects
+     * @param startField the date field holding the start of the events
+     * @param endField the date field holding the end of the events, empty if the events don't have an end
+     * @param durationField the field holding the duration of the events in minutes, used when there is no end field,
+     *     empty if the events don't have a duration
+     * @param intervalStart the start of the interval of the returned events, {@code null} for no limit
+     * @param intervalEnd the end of the interval of the returned events, {@code null} for no limit
+     * @return the events that can occur in the interval and that the current user can view, or {@code null} if the
+     *     fields of the class cannot be read from the database, e.g. because the start field is not a date
+     * @throws Exception if the query fails
+     */
+    public List<ObjectEvent> getEvents(String className, String startField, String endField, String durationField,
+        Date intervalStart, Date intervalEnd) throws Exception
+    {
+        XWikiContext xcontext = this.xcontextProvider.get();
+        BaseClass xclass = xcontext.getWiki().getXClass(this.documentReferenceResolver.resolve(className), xcontext);
+        if (!isDate(xclass, startField) || (StringUtils.isNotEmpty(endField) && !isDate(xclass, endField))) {
+            return null;
+        }
+        String durationEntity = null;
+        if (StringUtils.isEmpty(endField) && StringUtils.isNotEmpty(durationField)) {
+            durationEntity = getPropertyEntity(xclass, durationField);
+            if (!DURATION_PROPERTIES.contains(durationEntity)) {
+                return null;
+            }
+        }
+
+        Date start = intervalStart == null ? null : new Date(intervalStart.getTime() - INTERVAL_MARGIN);
+        Date end = intervalEnd == null ? null : new Date(intervalEnd.getTime() + INTERVAL_MARGIN);
+        Date startBound = start;
+        if (durationEntity != null) {
+            // The end of the events is only known once their duration is read, so bound their start by the longest
+            // duration instead.
+            long maxDuration = this.configuration.getObjectsMaxDuration();
+            startBound = start == null || maxDuration < 0 ? null : new Date(start.getTime() - maxDuration * MINUTE);
+        }
+        Query query =
+            this.queryManager.createQuery(getStatement(endField, durationEntity, startBound, end), Query.HQL);
+        query.bindValue("className", className).bindValue("startField", startField);
+        if (StringUtils.isNotEmpty(endField)) {
+            query.bindValue("endField", endField);
+        } else if (durationEntity != null) {
+            query.bindValue("durationField", durationField);
+        }
+        if (startBound != null) {
+            query.bindValue(INTERVAL_START, startBound);
+        }
+        if (end != null) {
+            query.bindValue(INTERVAL_END, end);
+        }
+
+        List<ObjectEvent> events = new ArrayList<>();
+        for (Object[] row : query.<Object[]>execute()) {
+            DocumentReference documentReference = this.documentReferenceResolver.resolve((String) row[0]);
+            Date eventStart = (Date) row[3];
+            Object endOrDuration = row.length > 4 ? row[4] : null;
+            if (eventStart == null || !this.authorization.hasAccess(Right.VIEW, documentReference)
+                || (durationEntity != null && endsBefore(eventStart, endOrDuration, start)))
+            {
+                continue;
+            }
+            events.add(new ObjectEvent(documentReference, getTitle(documentReference, (String) row[1], xcontext),
+                new XWikiDocument(documentReference).getExternalURL("view", xcontext), eventStart,
+                durationEntity == null ? (Date) endOrDuration : null, durationEntity != null ? endOrDuration : null,
+                (Date) row[2]));
+        }
+        return events;
+    }
+
+    /**
+     * Read the last modification dates of documents without loading them, e.g. to compute a validator of the events
+     * they hold. The date of a document is the most recent one of its translations.
+     *
+     * @param documentNames the full names of documents of the current wiki
+     * @return the last modification dates of the documents that the current user can view, by full name
+     * @throws QueryException if the query fails
+     */
+    public Map<String, Date> getModificationDates(List<String> documentNames) throws QueryException
+    {
+        List<String> names = new ArrayList<>();
+        for (String documentName : new LinkedHashSet<>(documentNames)) {
+            if (this.authorization.hasAccess(Right.VIEW, this.documentReferenceResolver.resolve(documentName))) {
+                names.add(documentName);
+            }
+        }
+        Map<String, Date> dates = new HashMap<>();
+        for (int from = 0; from < names.size(); from += MODIFICATION_DATES_BATCH) {
+            Query query = this.queryManager.createQuery(
+                "select doc.fullName, doc.date from XWikiDocument doc where doc.fullName in (:names)", Query.HQL);
+            query.bindValue("names", names.subList(from, Math.min(names.size(), from + MODIFICATION_DATES_BATCH)));
+            for (Object[] row : query.<Object[]>execute()) {
+                dates.merge((String) row[0], (Date) row[1], (date, other) -> date.after(other) ? date : other);
+            }
+        }
+        return dates;
+    }
+
+    private String getStatement(String endField, String durationEntity, Date start, Date end)
+    {
+        StringBuilder select = new StringBuilder("select doc.fullName, doc.title, doc.date, startProp.value");
+        StringBuilder where = new StringBuilder(" where doc.fullName = obj.name and doc.translation = 0"
+            + " and obj.className = :className and startProp.id.id = obj.id and startProp.id.name = :startField");
+        if (end != null) {
+            where.append(" and startProp.value < :intervalEnd");
+        }
+        if (StringUtils.isNotEmpty(endField)) {
+            // The end is read with a sub query, so that the events without end are returned too.
+            select.append(", (select endProp.value from DateProperty endProp"
+                + " where endProp.id.id = obj.id and endProp.id.name = :endField)");
+            if (start != null) {
+                where.append(" and not exists (select pastEnd.id.id from DateProperty pastEnd where pastEnd.id.id"
+                    + " = obj.id and pastEnd.id.name = :endField and pastEnd.value < :intervalStart)");
+            }
+        } else if (durationEntity != null) {
+            // The events ending before the interval are filtered once their duration is known.
+            select.append(", (select durationProp.value from ").append(durationEntity)
+                .append(" durationProp where durationProp.id.id = obj.id and durationProp.id.name = :durationField)");
+            if (start != null) {
+                where.append(" and startProp.value >= :intervalStart");
+            }
+        } else if (start != null) {
+            // The events without end nor duration only last the day they start.
+            where.append(" and startProp.value >= :intervalStart");
+        }
+        return select + " from XWikiDocument doc, BaseObject obj, DateProperty startProp" + where;
+    }
+
+    private boolean isDate(BaseClass xclass, String field)
+    {
+        return DateProperty.class.getSimpleName().equals(getPropertyEntity(xclass, field));
+    }
+
+    private String getPropertyEntity(BaseClass xclass, String field)
+    {
+        if (xclass == null || !(xclass.get(field) instanceof PropertyClass)) {
+            return null;
+        }
+        BaseProperty property = ((PropertyClass) xclass.get(field)).newProperty();
+        return property == null ? null : property.getClass().getSimpleName();
+    }
+
+    private boolean endsBefore(Date eventStart, Object duration, Date start)
+    {
+        if (start == null || duration == null) {
+            return start != null && eventStart.before(start);
+        }
+        long minutes;
+        if (duration instanceof Number) {
+            minutes = ((Number) duration).longValue();
+        } else {
+            try {
+                minutes = Long.parseLong(duration.toString().trim());
+            } catch (NumberFormatException e) {
+                // Let the caller deal with the invalid duration, as when the events are read from the pages.
+                return false;
+            }
+        }
+        return eventStart.getTime() + minutes * MINUTE < start.getTime();
+    }
+
+    private String getTitle(DocumentReference documentReference, String title, XWikiContext xcontext)
+        throws Exception
+    {
+        if (StringUtils.containsAny(title, '$', '#')) {
+            // The title is evaluated with Velocity, which requires the page.
+            return xcontext.getWiki().getDocument(documentReference, xcontext).getRenderedTitle(Syntax.PLAIN_1_0,
+                xcontext);
+        } else if (StringUtils.isNotBlank(title)) {
+            return title;
+        }
+        String defaultName = this.entityReferenceProvider.getDefaultReference(EntityType.DOCUMENT).getName();
+        return defaultName.equals(documentReference.getName())
+            ? documentReference.getLastSpaceReference().getName() : documentReference.getName();
+    }
+}
@@ -0,0 +1,104 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.fullcalendar.internal.feed;
+
+import org.apache.commons.codec.digest.DigestUtils;
+
+/**
+ * The raw content of an iCal feed, as last downloaded, together with the HTTP validators needed to revalidate it.
+ *
+ * @version $Id$
+ * @since 2.5.5
+ */
+public class CachedFeed
+{
+    private final String url;
+
+    private final byte[] content;
+
+    private final String contentHash;
+
+    private final String eTag;
+
+    private final String lastModified;
+
+    /**
+     * @param url the feed URL, in its external form
+     * @param content the raw feed content
+     * @param eTag the value of the {@code ETag} response header, or {@code null} if it was missing
+     * @param lastModified the value of the {@code Last-Modified} response header, or {@code null} if it was missing
+     */
+    public CachedFeed(String url, byte[] content, String eTag, String lastModified)
+    {
+        this.url = url;
+        this.content = content;
+        this.contentHash = DigestUtils.sha256Hex(content);
+        this.eTag = eTag;
+        this.lastModified = lastModified;
+    }
+
+    /**
+     * @return the feed URL, in its external form
+     */
+    public String getUrl()
+    {
+        return this.url;
+    }
+
+    /**
+     * @return the raw feed content; callers must not modify the returned array
+     */
+    public byte[] getContent()
+    {
+        return this.content;
+    }
+
+    /**
+     * @return the SHA-256 hash of the content, used to identify this version of the feed
+     */
+    public String getContentHash()
+    {
+        return this.contentHash;
+    }
+
+    /**
+     * @return the value of the {@code ETag} response header, or {@code null} if it was missing
+     */
+    public String getETag()
+    {
+        return this.eTag;
+    }
+
+    /**
+     * @return the value of the {@code Last-Modified} response header, or {@code null} if it was missing
+     */
+    public String getLastModified()
+    {
+        return this.lastModified;
+    }
+
+    /**
+     * @return {@code true} if the feed can be revalidated with a conditional request
+     */
+    public boolean hasValidators()
+    {
+        return this.eTag != null || this.lastModified != null;
+    }
+}
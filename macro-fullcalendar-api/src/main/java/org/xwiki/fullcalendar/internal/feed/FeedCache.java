@@ -0,0 +1,86 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.fullcalendar.internal.feed;
+
+import javax.inject.Inject;
+import javax.inject.Singleton;
+
+import org.slf4j.Logger;
+import org.xwiki.component.annotation.Component;
+import org.xwiki.fullcalendar.internal.FullCalendarConfiguration;
+import org.xwiki.fullcalendar.internal.util.SizeBoundedLruMap;
+
+/**
+ * Least recently used cache of raw iCal feeds, bounded by the total number of bytes it holds.
+ *
+ * @version $Id$
+ * @since 2.5.5
+ */
+@Component(roles = FeedCache.class)
+@Singleton
+public class FeedCache
+{
+    private final SizeBoundedLruMap<CachedFeed> feeds = new SizeBoundedLruMap<>(feed -> feed.getContent().length);
+
+    @Inject
+    private FullCalendarConfiguration configuration;
+
+    @Inject
+    private Logger logger;
+
+    /**
+     * @param url the feed URL, in its external form
+     * @return the cached feed, or {@code null} if the feed is not cached
+     */
+    public synchronized CachedFeed get(String url)
+    {
+        return this.feeds.get(url);
+    }
+
+    /**
+     * Cache a feed, replacing any previous version of it, and evict the least recently used feeds until the cache
+     * fits again in the configured size. Feeds larger than the whole cache are not kept.
+     *
+     * @param feed the feed to cache
+     */
+    public synchronized void put(CachedFeed feed)
+    {
+        if (!this.feeds.put(feed.getUrl(), feed, this.configuration.getFeedCacheMaxBytes())) {
+            this.logger.debug("Feed [{}] of [{}] bytes is too large to be cached.", feed.getUrl(),
+                feed.getContent().length);
+        }
+    }
+
+    /**
+     * @param url the URL of the feed to remove from the cache, in its external form
+     */
+    public synchronized void remove(String url)
+    {
+        this.feeds.remove(url);
+    }
+
+    /**
+     * @return the total number of bytes currently held by the cache
+     */
+    public synchronized long getTotalBytes()
+    {
+        return this.feeds.getTotalSize();
+    }
+}
@@ -0,0 +1,107 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.fullcalendar.internal.feed;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * The recent versions of a feed, with the UIDs of the events that changed between each of them, used to send to the
+ * clients only the events that changed since the version they last received. Only the UIDs are kept, not the previous
+ * versions themselves. This class is immutable.
+ *
+ * @version $Id$
+ * @since 2.5.5
+ */
+public final class FeedChangeLog
+{
+    /**
+     * The content hashes of the versions, from the oldest to the current one.
+     */
+    private final List<String> versions;
+
+    /**
+     * The UIDs of the events that changed between each version and the previous one, starting with the second version.
+     */
+    private final List<Set<String>> changes;
+
+    private FeedChangeLog(List<String> versions, List<Set<String>> changes)
+    {
+        this.versions = versions;
+        this.changes = changes;
+    }
+
+    /**
+     * @param contentHash the content hash of the first known version of a feed
+     * @return a log holding only the given version
+     */
+    public static FeedChangeLog start(String contentHash)
+    {
+        return new FeedChangeLog(List.of(contentHash), List.of());
+    }
+
+    /**
+     * @param contentHash the content hash of the new version of the feed
+     * @param changedUids the UIDs of the events that changed since the current version, {@code null} if unknown
+     * @param maxVersions the maximum number of versions to remember
+     * @return a log ending with the new version, dropping the oldest versions beyond the limit, or starting over if the
+     *     changes are unknown
+     */
+    public FeedChangeLog append(String contentHash, Set<String> changedUids, int maxVersions)
+    {
+        if (changedUids == null || maxVersions < 2) {
+            return start(contentHash);
+        }
+        int first = Math.max(0, this.versions.size() + 1 - maxVersions);
+        List<String> newVersions = new ArrayList<>(this.versions.subList(first, this.versions.size()));
+        newVersions.add(contentHash);
+        List<Set<String>> newChanges = new ArrayList<>(this.changes.subList(first, this.changes.size()));
+        newChanges.add(Collections.unmodifiableSet(changedUids));
+        return new FeedChangeLog(Collections.unmodifiableList(newVersions), Collections.unmodifiableList(newChanges));
+    }
+
+    /**
+     * @return the content hash of the current version of the feed
+     */
+    public String getCurrentVersion()
+    {
+        return this.versions.get(this.versions.size() - 1);
+    }
+
+    /**
+     * @param contentHash the content hash of a previous version of the feed
+     * @return the UIDs of the events that changed since the given version, or {@code null} if the version is unknown
+     */
+    public Set<String> getChangedUids(String contentHash)
+    {
+        int index = this.versions.lastIndexOf(contentHash);
+        if (index < 0) {
+            return null;
+        }
+        Set<String> changedUids = new HashSet<>();
+        for (Set<String> uids : this.changes.subList(index, this.changes.size())) {
+            changedUids.addAll(uids);
+        }
+        return changedUids;
+    }
+}
@@ -0,0 +1,409 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.fullcalendar.internal.feed;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.net.Authenticator;
+import java.net.HttpURLConnection;
+import java.net.ProxySelector;
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.net.URLConnection;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.net.http.HttpResponse.BodyHandlers;
+import java.time.Duration;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.InflaterInputStream;
+
+import javax.inject.Inject;
+import javax.inject.Singleton;
+
+import org.apache.commons.io.IOUtils;
+import org.apache.commons.lang3.concurrent.BasicThreadFactory;
+import org.slf4j.Logger;
+import org.xwiki.component.annotation.Component;
+import org.xwiki.component.phase.Disposable;
+import org.xwiki.component.phase.Initializable;
+import org.xwiki.fullcalendar.internal.FullCalendarConfiguration;
+import org.xwiki.fullcalendar.internal.metrics.FeedMetrics;
+import org.xwiki.fullcalendar.internal.metrics.FeedMetricsRegistry;
+
+/**
+ * Downloads iCal feeds, revalidating the cached ones with conditional requests so that unchanged feeds are not
+ * downloaded again. The HTTP feeds are downloaded with a shared client that reuses its connections and asks for a
+ * compressed transfer. The downloads run on a dedicated pool of threads, with connect and read timeouts, a limit on
+ * the number of concurrent downloads from the same host and a deadline, so that a slow server only delays the
+ * calendars using it instead of holding the request threads of the wiki. The read timeout applies to each read of the
+ * response body too.
+ *
+ * @version $Id$
+ * @since 2.5.5
+ */
+@Component(roles = FeedFetcher.class)
+@Singleton
+public class FeedFetcher implements Initializable, Disposable
+{
+    private static final String ETAG = "ETag";
+
+    private static final String LAST_MODIFIED = "Last-Modified";
+
+    private static final String IF_NONE_MATCH = "If-None-Match";
+
+    private static final String IF_MODIFIED_SINCE = "If-Modified-Since";
+
+    private static final String ACCEPT_ENCODING = "Accept-Encoding";
+
+    private static final String CONTENT_ENCODING = "Content-Encoding";
+
+    private static final String GZIP = "gzip";
+
+    private static final String X_GZIP = "x-gzip";
+
+    private static final String DEFLATE = "deflate";
+
+    private static final String HTTP = "http";
+
+    private static final String HTTPS = "https";
+
+    private static final long KEEP_ALIVE_SECONDS = 60;
+
+    private static final int QUEUE_CAPACITY = 1000;
+
+    private final Map<String, HostPermits> hostPermits = new ConcurrentHashMap<>();
+
+    private ThreadPoolExecutor executor;
+
+    private ScheduledThreadPoolExecutor readWatchdog;
+
+    private HttpClient httpClient;
+
+    @Inject
+    private FeedCache feedCache;
+
+    @Inject
+    private FeedStore feedStore;
+
+    @Inject
+    private FullCalendarConfiguration configuration;
+
+    @Inject
+    private FeedMetricsRegistry feedMetricsRegistry;
+
+    @Inject
+    private Logger logger;
+
+    /**
+     * The downloads allowed from a host, kept only while some download from the host is waiting or running.
+     */
+    private static final class HostPermits
+    {
+        private final Semaphore semaphore;
+
+        /**
+         * The number of downloads waiting for or holding a permit, only accessed while computing the map entry.
+         */
+        private int users;
+
+        HostPermits(int maxPerHost)
+        {
+            this.semaphore = new Semaphore(maxPerHost);
+        }
+    }
+
+    @Override
+    public void initialize()
+    {
+        int threads = Math.max(1, this.configuration.getFetchThreads());
+        this.executor = new ThreadPoolExecutor(threads, threads, KEEP_ALIVE_SECONDS, TimeUnit.SECONDS,
+            new LinkedBlockingQueue<>(QUEUE_CAPACITY),
+            new BasicThreadFactory.Builder().namingPattern("FullCalendar feed fetch %d").daemon(true).build());
+        this.executor.allowCoreThreadTimeOut(true);
+        this.readWatchdog = new ScheduledThreadPoolExecutor(1,
+            new BasicThreadFactory.Builder().namingPattern("FullCalendar feed read timeout %d").daemon(true).build());
+        this.readWatchdog.setRemoveOnCancelPolicy(true);
+
+        // A single client, so that the connections to the feed servers are pooled and reused.
+        HttpClient.Builder httpClientBuilder = HttpClient.newBuilder().followRedirects(HttpClient.Redirect.NORMAL);
+        int connectTimeout = this.configuration.getFetchConnectTimeout();
+        if (connectTimeout > 0) {
+            httpClientBuilder.connectTimeout(Duration.ofMillis(connectTimeout));
+        }
+        ProxySelector proxySelector = ProxySelector.getDefault();
+        if (proxySelector != null) {
+            httpClientBuilder.proxy(proxySelector);
+        }
+        // Like URLConnection, answer the authentication challenges of the servers and proxies with the authenticator
+        // installed in the JVM, if any.
+        Authenticator authenticator = Authenticator.getDefault();
+        if (authenticator != null) {
+            httpClientBuilder.authenticator(authenticator);
+        }
+        this.httpClient = httpClientBuilder.build();
+    }
+
+    @Override
+    public void dispose()
+    {
+        this.executor.shutdownNow();
+        this.readWatchdog.shutdownNow();
+    }
+
+    /**
+     * Get the content of a feed. If the feed is cached and the server confirms that it did not change, the cached
+     * instance is returned as is, so callers can rely on its identity to reuse anything they computed from it.
+     *
+     * @param iCalURL the feed URL
+     * @return the feed content and validators
+     * @throws IOException if the feed cannot be retrieved before the configured deadline
+     */
+    public CachedFeed fetch(URL iCalURL) throws IOException
+    {
+        String url = iCalURL.toExternalForm();
+        FeedMetrics metrics = this.feedMetricsRegistry.get(url);
+        long start = System.nanoTime();
+        boolean success = false;
+        try {
+            CachedFeed feed = fetchBeforeDeadline(iCalURL, url, metrics);
+            success = true;
+            return feed;
+        } finally {
+            metrics.recordFetch(System.nanoTime() - start, success);
+        }
+    }
+
+    private CachedFeed fetchBeforeDeadline(URL iCalURL, String url, FeedMetrics metrics) throws IOException
+    {
+        long deadline = this.configuration.getFetchDeadline();
+        long deadlineNanos = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(deadline);
+        Future<CachedFeed> future;
+        try {
+            future = this.executor.submit(() -> fetchWithHostLimit(iCalURL, url, metrics, deadlineNanos));
+        } catch (RejectedExecutionException e) {
+            throw new IOException(String.format("Too many feeds are waiting to be retrieved, skipping [%s].", url), e);
+        }
+        try {
+            return future.get(deadline, TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+            future.cancel(true);
+            throw new IOException(String.format("Feed [%s] was not retrieved within [%d] ms.", url, deadline), e);
+        } catch (InterruptedException e) {
+            future.cancel(true);
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException(String.format("Interrupted while retrieving feed [%s].", url));
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof IOException) {
+                throw (IOException) e.getCause();
+            }
+            throw new IOException(String.format("Failed to retrieve feed [%s].", url), e.getCause());
+        }
+    }
+
+    private CachedFeed fetchWithHostLimit(URL iCalURL, String url, FeedMetrics metrics, long deadlineNanos)
+        throws IOException, InterruptedException
+    {
+        int maxPerHost = this.configuration.getFetchMaxPerHost();
+        if (maxPerHost <= 0) {
+            return fetch(iCalURL, url, metrics);
+        }
+        String host = iCalURL.getHost().toLowerCase(Locale.ROOT);
+        Semaphore permits = this.hostPermits.compute(host, (key, value) -> {
+            HostPermits result = value != null ? value : new HostPermits(maxPerHost);
+            result.users++;
+            return result;
+        }).semaphore;
+        try {
+            if (!permits.tryAcquire(deadlineNanos - System.nanoTime(), TimeUnit.NANOSECONDS)) {
+                throw new IOException(String.format("Too many feeds are being retrieved from host [%s].", host));
+            }
+            try {
+                return fetch(iCalURL, url, metrics);
+            } finally {
+                permits.release();
+            }
+        } finally {
+            // Forget the hosts that are not used anymore.
+            this.hostPermits.computeIfPresent(host, (key, value) -> {
+                value.users--;
+                return value.users > 0 ? value : null;
+            });
+        }
+    }
+
+    private CachedFeed fetch(URL iCalURL, String url, FeedMetrics metrics) throws IOException, InterruptedException
+    {
+        CachedFeed cachedFeed = this.feedCache.get(url);
+
+        URI uri = toHttpURI(iCalURL);
+        CachedFeed feed = uri != null ? fetch(uri, url, cachedFeed) : fetch(iCalURL, url, cachedFeed);
+        if (feed == cachedFeed) {
+            this.logger.debug("Feed [{}] was not modified, reusing the cached content.", url);
+            metrics.recordNotModified();
+            this.feedStore.markValidated(url);
+            return cachedFeed;
+        }
+        this.logger.debug("Downloaded [{}] bytes from feed [{}].", feed.getContent().length, url);
+        metrics.recordDownload(feed.getContent().length);
+        this.feedStore.save(feed);
+
+        if (feed.hasValidators()) {
+            this.feedCache.put(feed);
+        } else {
+            // Without validators there is no way to know if the cached content is still valid.
+            this.feedCache.remove(url);
+        }
+        return feed;
+    }
+
+    /**
+     * Download a feed with the shared HTTP client, asking for a compressed transfer.
+     *
+     * @return the downloaded feed, or the cached feed if it was not modified
+     */
+    private CachedFeed fetch(URI uri, String url, CachedFeed cachedFeed) throws IOException, InterruptedException
+    {
+        HttpRequest.Builder request = HttpRequest.newBuilder(uri).GET().header(ACCEPT_ENCODING, GZIP + ", " + DEFLATE);
+        int readTimeout = this.configuration.getFetchReadTimeout();
+        if (readTimeout > 0) {
+            request.timeout(Duration.ofMillis(readTimeout));
+        }
+        if (cachedFeed != null) {
+            if (cachedFeed.getETag() != null) {
+                request.header(IF_NONE_MATCH, cachedFeed.getETag());
+            }
+            if (cachedFeed.getLastModified() != null) {
+                request.header(IF_MODIFIED_SINCE, cachedFeed.getLastModified());
+            }
+        }
+
+        HttpResponse<InputStream> response = this.httpClient.send(request.build(), BodyHandlers.ofInputStream());
+        // The timeout of the request only bounds the wait for the headers.
+        try (InputStream body = readTimeout > 0
+            ? new ReadTimeoutInputStream(response.body(), readTimeout, this.readWatchdog) : response.body())
+        {
+            int statusCode = response.statusCode();
+            if (cachedFeed != null && statusCode == HttpURLConnection.HTTP_NOT_MODIFIED) {
+                return cachedFeed;
+            }
+            checkStatusCode(statusCode, url);
+            // Decompress while reading the response.
+            byte[] content = IOUtils.toByteArray(decode(body, response.headers().firstValue(CONTENT_ENCODING)));
+            return new CachedFeed(url, content, response.headers().firstValue(ETAG).orElse(null),
+                response.headers().firstValue(LAST_MODIFIED).orElse(null));
+        }
+    }
+
+    /**
+     * Download a feed that is not served over HTTP.
+     *
+     * @return the downloaded feed, or the cached feed if it was not modified
+     */
+    private CachedFeed fetch(URL iCalURL, String url, CachedFeed cachedFeed) throws IOException
+    {
+        URLConnection connection = iCalURL.openConnection();
+        connection.setConnectTimeout(Math.max(0, this.configuration.getFetchConnectTimeout()));
+        connection.setReadTimeout(Math.max(0, this.configuration.getFetchReadTimeout()));
+        if (cachedFeed != null) {
+            addValidators(connection, cachedFeed);
+        }
+        if (connection instanceof HttpURLConnection) {
+            int statusCode = ((HttpURLConnection) connection).getResponseCode();
+            if (cachedFeed != null && statusCode == HttpURLConnection.HTTP_NOT_MODIFIED) {
+                ((HttpURLConnection) connection).disconnect();
+                return cachedFeed;
+            }
+            checkStatusCode(statusCode, url);
+        }
+
+        byte[] content;
+        try (InputStream is = connection.getInputStream()) {
+            content = IOUtils.toByteArray(is);
+        }
+        return new CachedFeed(url, content, connection.getHeaderField(ETAG), connection.getHeaderField(LAST_MODIFIED));
+    }
+
+    /**
+     * Only a successful response holds the feed: a redirection that was not followed or a {@code 304 Not Modified}
+     * without cached content must not be cached as the feed.
+     */
+    private void checkStatusCode(int statusCode, String url) throws IOException
+    {
+        if (statusCode < HttpURLConnection.HTTP_OK || statusCode >= HttpURLConnection.HTTP_MULT_CHOICE) {
+            throw new IOException(
+                String.format("Server returned HTTP response code [%d] for feed [%s].", statusCode, url));
+        }
+    }
+
+    /**
+     * @return the URI of the feed if it is served over HTTP and can be requested with the HTTP client, {@code null}
+     *     otherwise
+     */
+    private URI toHttpURI(URL iCalURL)
+    {
+        String protocol = iCalURL.getProtocol();
+        if (!HTTP.equalsIgnoreCase(protocol) && !HTTPS.equalsIgnoreCase(protocol)) {
+            return null;
+        }
+        try {
+            return iCalURL.toURI();
+        } catch (URISyntaxException e) {
+            // Leave the URLs that are not valid URIs to the more lenient URLConnection.
+            return null;
+        }
+    }
+
+    private InputStream decode(InputStream body, Optional<String> contentEncoding) throws IOException
+    {
+        String encoding = contentEncoding.orElse("").trim().toLowerCase(Locale.ROOT);
+        if (GZIP.equals(encoding) || X_GZIP.equals(encoding)) {
+            return new GZIPInputStream(body);
+        } else if (DEFLATE.equals(encoding)) {
+            return new InflaterInputStream(body);
+        }
+        return body;
+    }
+
+    private void addValidators(URLConnection connection, CachedFeed cachedFeed)
+    {
+        if (cachedFeed.getETag() != null) {
+            connection.setRequestProperty(IF_NONE_MATCH, cachedFeed.getETag());
+        }
+        if (cachedFeed.getLastModified() != null) {
+            connection.setRequestProperty(IF_MODIFIED_SINCE, cachedFeed.getLastModified());
+        }
+    }
+}
@@ -0,0 +1,134 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.fullcalendar.internal.feed;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import javax.inject.Inject;
+import javax.inject.Singleton;
+
+import org.apache.commons.lang3.concurrent.BasicThreadFactory;
+import org.apache.commons.lang3.exception.ExceptionUtils;
+import org.slf4j.Logger;
+import org.xwiki.component.annotation.Component;
+import org.xwiki.component.phase.Disposable;
+import org.xwiki.component.phase.Initializable;
+import org.xwiki.fullcalendar.internal.FullCalendarConfiguration;
+
+/**
+ * Loads several feeds concurrently, on a pool of threads shared by all the requests so that the number of feeds
+ * fetched at the same time stays bounded. A feed that fails to load doesn't prevent the others from being displayed.
+ *
+ * @version $Id$
+ * @since 2.5.5
+ */
+@Component(roles = FeedLoadExecutor.class)
+@Singleton
+public class FeedLoadExecutor implements Initializable, Disposable
+{
+    private static final long KEEP_ALIVE_SECONDS = 60;
+
+    private static final int QUEUE_CAPACITY = 1000;
+
+    private ThreadPoolExecutor executor;
+
+    @Inject
+    private FullCalendarConfiguration configuration;
+
+    @Inject
+    private Logger logger;
+
+    @Override
+    public void initialize()
+    {
+        int threads = Math.max(1, this.configuration.getMultiFeedThreads());
+        this.executor = new ThreadPoolExecutor(threads, threads, KEEP_ALIVE_SECONDS, TimeUnit.SECONDS,
+            new LinkedBlockingQueue<>(QUEUE_CAPACITY),
+            new BasicThreadFactory.Builder().namingPattern("FullCalendar feed loading %d").daemon(true).build());
+        this.executor.allowCoreThreadTimeOut(true);
+    }
+
+    @Override
+    public void dispose()
+    {
+        this.executor.shutdownNow();
+    }
+
+    /**
+     * Run the given loads concurrently and wait for all of them, at most for the configured fetch deadline. The loads
+     * that are not done by then are cancelled and considered failed.
+     *
+     * @param <T> the type of the loaded data
+     * @param sources a description of the source of each load, used in the logs
+     * @param loads the loads to run
+     * @return the result of each load, in the order of the loads, or {@code null} for the loads that failed
+     * @throws Exception if all the loads failed, the error of the first one
+     */
+    public <T> List<T> loadAll(List<?> sources, List<Callable<T>> loads) throws Exception
+    {
+        List<Future<T>> futures = new ArrayList<>(loads.size());
+        for (int i = 0; i < loads.size(); i++) {
+            try {
+                futures.add(this.executor.submit(loads.get(i)));
+            } catch (RejectedExecutionException e) {
+                futures.add(CompletableFuture.failedFuture(new IOException(
+                    String.format("Too many feeds are waiting to be loaded, skipping [%s].", sources.get(i)), e)));
+            }
+        }
+
+        List<T> results = new ArrayList<>(loads.size());
+        Exception firstError = null;
+        long deadlineNanos = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(this.configuration.getFetchDeadline());
+        try {
+            for (int i = 0; i < futures.size(); i++) {
+                try {
+                    results.add(futures.get(i).get(deadlineNanos - System.nanoTime(), TimeUnit.NANOSECONDS));
+                } catch (ExecutionException | TimeoutException e) {
+                    Exception error = e.getCause() instanceof Exception ? (Exception) e.getCause() : e;
+                    if (firstError == null) {
+                        firstError = error;
+                    }
+                    this.logger.warn("Failed to load the calendar feed [{}]. Cause: [{}]", sources.get(i),
+                        ExceptionUtils.getRootCauseMessage(error));
+                    results.add(null);
+                }
+            }
+        } finally {
+            // Don't start the loads that are still waiting when the request is interrupted. The running ones are not
+            // interrupted, since other requests may be waiting for the same feed.
+            futures.forEach(future -> future.cancel(false));
+        }
+        if (firstError != null && results.stream().allMatch(result -> result == null)) {
+            throw firstError;
+        }
+        return results;
+    }
+}
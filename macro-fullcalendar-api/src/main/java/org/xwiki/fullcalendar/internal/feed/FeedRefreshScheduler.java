@@ -0,0 +1,222 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.fullcalendar.internal.feed;
+
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import javax.inject.Inject;
+import javax.inject.Singleton;
+
+import org.apache.commons.lang3.concurrent.BasicThreadFactory;
+import org.apache.commons.lang3.exception.ExceptionUtils;
+import org.slf4j.Logger;
+import org.xwiki.component.annotation.Component;
+import org.xwiki.component.phase.Disposable;
+import org.xwiki.component.phase.Initializable;
+import org.xwiki.fullcalendar.internal.FullCalendarConfiguration;
+import org.xwiki.fullcalendar.internal.metrics.FeedMetricsRegistry;
+
+/**
+ * Refreshes the feeds displayed on the wiki in the background, so that requests can be served from the last good
+ * snapshot of a feed instead of waiting for the upstream server. Only the feeds that were successfully loaded are
+ * registered. Feeds that are not requested anymore are dropped after the configured idle timeout, and the least
+ * recently requested feeds are dropped when there are too many of them. The refreshes run on a small, dedicated pool
+ * of low priority threads.
+ *
+ * @version $Id$
+ * @since 2.5.5
+ */
+@Component(roles = FeedRefreshScheduler.class)
+@Singleton
+public class FeedRefreshScheduler implements Initializable, Disposable
+{
+    private final Map<String, RegisteredFeed> feeds = new ConcurrentHashMap<>();
+
+    private final Set<String> pendingRefreshes = ConcurrentHashMap.newKeySet();
+
+    private ScheduledExecutorService executor;
+
+    @Inject
+    private FullCalendarConfiguration configuration;
+
+    @Inject
+    private FeedMetricsRegistry feedMetricsRegistry;
+
+    @Inject
+    private Logger logger;
+
+    private static final class RegisteredFeed
+    {
+        private final Callable<?> refreshTask;
+
+        private volatile long lastAccess = System.currentTimeMillis();
+
+        private ScheduledFuture<?> future;
+
+        RegisteredFeed(Callable<?> refreshTask)
+        {
+            this.refreshTask = refreshTask;
+        }
+    }
+
+    @Override
+    public void initialize()
+    {
+        this.executor = new ScheduledThreadPoolExecutor(this.configuration.getRefreshThreads(),
+            new BasicThreadFactory.Builder().namingPattern("FullCalendar feed refresh %d").daemon(true)
+                .priority(Thread.MIN_PRIORITY).build());
+    }
+
+    @Override
+    public void dispose()
+    {
+        this.executor.shutdownNow();
+    }
+
+    /**
+     * @return {@code true} if the feeds are refreshed in the background, {@code false} if they have to be
+     *     revalidated on each request
+     */
+    public boolean isEnabled()
+    {
+        return this.configuration.getRefreshInterval() > 0;
+    }
+
+    /**
+     * @param validationTime the last time a feed was validated against the upstream server
+     * @return {@code true} if the feed should be revalidated
+     */
+    public boolean isStale(long validationTime)
+    {
+        return System.currentTimeMillis() - validationTime
+            > TimeUnit.SECONDS.toMillis(this.configuration.getRefreshInterval());
+    }
+
+    /**
+     * Record that a feed was requested, and schedule its periodic refresh if it is not already scheduled. Should only
+     * be called once the feed was loaded, so that failing URLs are not polled.
+     *
+     * @param url the feed URL, in its external form
+     * @param refreshTask the task fetching and parsing the feed
+     */
+    public void register(String url, Callable<?> refreshTask)
+    {
+        if (!isEnabled()) {
+            return;
+        }
+        boolean[] added = new boolean[1];
+        this.feeds.computeIfAbsent(url, key -> {
+            added[0] = true;
+            return schedule(key, refreshTask);
+        }).lastAccess = System.currentTimeMillis();
+        if (added[0]) {
+            evictExcessFeeds();
+        }
+    }
+
+    /**
+     * Refresh a feed in the background, unless a refresh of the same feed is already waiting to run.
+     *
+     * @param url the feed URL, in its external form
+     * @param refreshTask the task fetching and parsing the feed
+     */
+    public void refreshNow(String url, Callable<?> refreshTask)
+    {
+        if (this.pendingRefreshes.add(url)) {
+            try {
+                this.executor.execute(() -> refresh(url, refreshTask));
+            } catch (RejectedExecutionException e) {
+                this.pendingRefreshes.remove(url);
+                this.logger.debug("Skipped the refresh of feed [{}] because the scheduler is stopped.", url);
+            }
+        }
+    }
+
+    private RegisteredFeed schedule(String url, Callable<?> refreshTask)
+    {
+        long interval = this.configuration.getRefreshInterval();
+        RegisteredFeed feed = new RegisteredFeed(refreshTask);
+        feed.future =
+            this.executor.scheduleWithFixedDelay(() -> runScheduledRefresh(url), interval, interval, TimeUnit.SECONDS);
+        return feed;
+    }
+
+    private void runScheduledRefresh(String url)
+    {
+        RegisteredFeed feed = this.feeds.get(url);
+        if (feed == null) {
+            return;
+        }
+        long idleTime = System.currentTimeMillis() - feed.lastAccess;
+        if (idleTime > TimeUnit.SECONDS.toMillis(this.configuration.getRefreshIdleTimeout())) {
+            drop(url, feed);
+            this.logger.debug("Stopped refreshing feed [{}] because it was not requested recently.", url);
+        } else if (this.pendingRefreshes.add(url)) {
+            refresh(url, feed.refreshTask);
+        }
+    }
+
+    private void evictExcessFeeds()
+    {
+        int maxFeeds = Math.max(1, this.configuration.getRefreshMaxFeeds());
+        while (this.feeds.size() > maxFeeds) {
+            Map.Entry<String, RegisteredFeed> leastRecent = null;
+            for (Map.Entry<String, RegisteredFeed> entry : this.feeds.entrySet()) {
+                if (leastRecent == null || entry.getValue().lastAccess < leastRecent.getValue().lastAccess) {
+                    leastRecent = entry;
+                }
+            }
+            if (leastRecent == null) {
+                return;
+            }
+            drop(leastRecent.getKey(), leastRecent.getValue());
+            this.logger.debug("Stopped refreshing feed [{}] because too many feeds are refreshed.",
+                leastRecent.getKey());
+        }
+    }
+
+    private void drop(String url, RegisteredFeed feed)
+    {
+        if (this.feeds.remove(url, feed)) {
+            feed.future.cancel(false);
+            this.feedMetricsRegistry.remove(url);
+        }
+    }
+
+    private void refresh(String url, Callable<?> refreshTask)
+    {
+        try {
+            refreshTask.call();
+        } catch (Exception e) {
+            // Keep serving the last good snapshot.
+            this.logger.warn("Failed to refresh feed [{}]. Cause: [{}]", url, ExceptionUtils.getRootCauseMessage(e));
+        } finally {
+            this.pendingRefreshes.remove(url);
+        }
+    }
+}
@@ -0,0 +1,216 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.fullcalendar.internal.feed;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.Date;
+
+import org.xwiki.fullcalendar.internal.util.CalendarReader;
+import org.xwiki.fullcalendar.internal.util.EventIntervalIndex;
+import org.xwiki.fullcalendar.internal.util.RecurrenceExpansionCache;
+import org.xwiki.fullcalendar.internal.util.StringInterner;
+
+/**
+ * A parsed version of an iCal feed. Snapshots are shared between requests, so neither the snapshot nor the calendar
+ * it holds should be modified. Feeds too large to be kept parsed in memory are kept as raw content instead, and only
+ * the events of the requested interval are parsed on each request.
+ *
+ * @version $Id$
+ * @since 2.5.5
+ */
+public class FeedSnapshot
+{
+    /**
+     * Parsed calendars take about six times the memory of the content they were parsed from (measured with ical4j on
+     * feeds of a few thousand events).
+     */
+    private static final int PARSED_SIZE_FACTOR = 6;
+
+    private final String url;
+
+    private final String contentHash;
+
+    private final long contentLength;
+
+    private final CalendarReader calendarReader;
+
+    private final EventIntervalIndex eventIndex;
+
+    private final byte[] content;
+
+    private final RecurrenceExpansionCache expansionCache;
+
+    private final StringInterner stringInterner = new StringInterner();
+
+    private volatile long validationTime = System.currentTimeMillis();
+
+    private volatile FeedChangeLog changeLog;
+
+    /**
+     * @param feed the raw feed the snapshot was parsed from
+     * @param calendarReader the parsed feed
+     * @param eventIndex the index of the events of the parsed feed
+     * @param expansionCache the cache of the expanded recurring events of the feed, {@code null} for no cache
+     */
+    public FeedSnapshot(CachedFeed feed, CalendarReader calendarReader, EventIntervalIndex eventIndex,
+        RecurrenceExpansionCache expansionCache)
+    {
+        this.url = feed.getUrl();
+        this.contentHash = feed.getContentHash();
+        this.contentLength = feed.getContent().length;
+        this.calendarReader = calendarReader;
+        this.eventIndex = eventIndex;
+        this.content = null;
+        this.expansionCache = expansionCache;
+    }
+
+    /**
+     * Create a snapshot that parses the feed content on demand, for the requested interval only.
+     *
+     * @param feed the raw feed
+     * @param expansionCache the cache of the expanded recurring events of the feed, {@code null} for no cache
+     */
+    public FeedSnapshot(CachedFeed feed, RecurrenceExpansionCache expansionCache)
+    {
+        this.url = feed.getUrl();
+        this.contentHash = feed.getContentHash();
+        this.contentLength = feed.getContent().length;
+        this.calendarReader = null;
+        this.eventIndex = null;
+        this.content = feed.getContent();
+        this.expansionCache = expansionCache;
+    }
+
+    /**
+     * @return the URL of the feed, in its external form
+     */
+    public String getUrl()
+    {
+        return this.url;
+    }
+
+    /**
+     * @return the hash of the content the snapshot was parsed from
+     */
+    public String getContentHash()
+    {
+        return this.contentHash;
+    }
+
+    /**
+     * @return the estimated memory used by the snapshot, in bytes
+     */
+    public long getEstimatedSize()
+    {
+        // Streamed snapshots only hold the raw content.
+        return isStreamed() ? this.contentLength : this.contentLength * PARSED_SIZE_FACTOR;
+    }
+
+    /**
+     * @param intervalStart the start of the interval of the requested events, {@code null} for no limit
+     * @param intervalEnd the end of the interval of the requested events, {@code null} for no limit
+     * @return the parsed feed, containing at least the events that can occur in the given interval
+     * @throws Exception if the feed is parsed on demand and its content is malformed
+     */
+    public CalendarReader getCalendarReader(Date intervalStart, Date intervalEnd) throws Exception
+    {
+        if (this.calendarReader != null) {
+            return this.calendarReader;
+        }
+        return new CalendarReader(new InputStreamReader(new ByteArrayInputStream(this.content), StandardCharsets.UTF_8),
+            intervalStart, intervalEnd);
+    }
+
+    /**
+     * @return the index of the events of the parsed feed, or {@code null} if the feed is parsed on each request
+     */
+    public EventIntervalIndex getEventIndex()
+    {
+        return this.eventIndex;
+    }
+
+    /**
+     * @return the cache of the expanded recurring events of the feed, or {@code null} if they are not cached
+     */
+    public RecurrenceExpansionCache getExpansionCache()
+    {
+        return this.expansionCache;
+    }
+
+    /**
+     * @return the table of the values shared by the events built from the feed
+     */
+    public StringInterner getStringInterner()
+    {
+        return this.stringInterner;
+    }
+
+    /**
+     * @return {@code true} if the feed is parsed on each request, {@code false} if the snapshot holds the parsed feed
+     */
+    public boolean isStreamed()
+    {
+        return this.calendarReader == null;
+    }
+
+    /**
+     * @return the recent versions of the feed, ending with this one, and the events that changed between them
+     */
+    public FeedChangeLog getChangeLog()
+    {
+        return this.changeLog != null ? this.changeLog : FeedChangeLog.start(this.contentHash);
+    }
+
+    /**
+     * @param changeLog the recent versions of the feed, ending with this one
+     */
+    public void setChangeLog(FeedChangeLog changeLog)
+    {
+        this.changeLog = changeLog;
+    }
+
+    /**
+     * @return the last time the snapshot was confirmed to match the upstream feed, in milliseconds since the epoch
+     */
+    public long getValidationTime()
+    {
+        return this.validationTime;
+    }
+
+    /**
+     * Record that the upstream feed was checked and did not change.
+     */
+    public void markValidated()
+    {
+        markValidated(System.currentTimeMillis());
+    }
+
+    /**
+     * Record the time the upstream feed was last checked, when it was checked before this snapshot was created.
+     *
+     * @param validationTime the time of the check, in milliseconds since the epoch
+     */
+    public void markValidated(long validationTime)
+    {
+        this.validationTime = validationTime;
+    }
+}
@@ -0,0 +1,74 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.fullcalendar.internal.feed;
+
+import javax.inject.Inject;
+import javax.inject.Singleton;
+
+import org.xwiki.component.annotation.Component;
+import org.xwiki.fullcalendar.internal.FullCalendarConfiguration;
+import org.xwiki.fullcalendar.internal.util.SizeBoundedLruMap;
+
+/**
+ * Least recently used cache of parsed feeds, keyed by feed URL and content hash. The memory used by a snapshot is
+ * estimated from the size of the content it was parsed from.
+ *
+ * @version $Id$
+ * @since 2.5.5
+ */
+@Component(roles = FeedSnapshotCache.class)
+@Singleton
+public class FeedSnapshotCache
+{
+    private final SizeBoundedLruMap<FeedSnapshot> snapshots = new SizeBoundedLruMap<>(FeedSnapshot::getEstimatedSize);
+
+    @Inject
+    private FullCalendarConfiguration configuration;
+
+    /**
+     * @param url the feed URL, in its external form
+     * @return the snapshot of the last known version of the feed, or {@code null} if there is none
+     */
+    public synchronized FeedSnapshot get(String url)
+    {
+        return this.snapshots.get(url);
+    }
+
+    /**
+     * @param url the feed URL, in its external form
+     * @param contentHash the hash of the current feed content
+     * @return the snapshot parsed from the given content, or {@code null} if there is none
+     */
+    public synchronized FeedSnapshot get(String url, String contentHash)
+    {
+        FeedSnapshot snapshot = this.snapshots.get(url);
+        return snapshot != null && snapshot.getContentHash().equals(contentHash) ? snapshot : null;
+    }
+
+    /**
+     * Cache a snapshot, replacing the snapshot of any previous version of the same feed.
+     *
+     * @param snapshot the snapshot to cache
+     */
+    public synchronized void put(FeedSnapshot snapshot)
+    {
+        this.snapshots.put(snapshot.getUrl(), snapshot, this.configuration.getSnapshotCacheMaxBytes());
+    }
+}
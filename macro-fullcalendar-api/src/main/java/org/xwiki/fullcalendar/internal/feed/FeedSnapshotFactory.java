@@ -0,0 +1,113 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.fullcalendar.internal.feed;
+
+import java.io.ByteArrayInputStream;
+import java.util.List;
+
+import javax.inject.Inject;
+import javax.inject.Singleton;
+
+import org.slf4j.Logger;
+import org.xwiki.component.annotation.Component;
+import org.xwiki.fullcalendar.internal.FullCalendarConfiguration;
+import org.xwiki.fullcalendar.internal.metrics.FeedMetrics;
+import org.xwiki.fullcalendar.internal.util.CalendarReader;
+import org.xwiki.fullcalendar.internal.util.DateProcessor;
+import org.xwiki.fullcalendar.internal.util.EventDelta;
+import org.xwiki.fullcalendar.internal.util.EventIntervalIndex;
+import org.xwiki.fullcalendar.internal.util.RecurrenceExpansionCache;
+
+import net.fortuna.ical4j.model.component.CalendarComponent;
+
+/**
+ * Parses the downloaded feeds into snapshots and caches them. Large feeds are parsed again for each request, for the
+ * requested interval only, while the other feeds are parsed once and their events indexed by time span.
+ *
+ * @version $Id$
+ * @since 2.5.5
+ */
+@Component(roles = FeedSnapshotFactory.class)
+@Singleton
+public class FeedSnapshotFactory
+{
+    @Inject
+    private FeedSnapshotCache feedSnapshotCache;
+
+    @Inject
+    private DateProcessor dateProcessor;
+
+    @Inject
+    private FullCalendarConfiguration configuration;
+
+    @Inject
+    private Logger logger;
+
+    /**
+     * Parse a feed and cache the result. When a previous version of the feed is given, only the events that changed
+     * since then are indexed again, and the expanded occurrences of the recurring events that did not change are kept.
+     *
+     * @param feed the downloaded feed
+     * @param metrics the metrics of the feed
+     * @param previousSnapshot the snapshot of the previous version of the feed, {@code null} if there is none
+     * @return the snapshot of the feed
+     * @throws Exception if the feed cannot be parsed
+     */
+    public FeedSnapshot create(CachedFeed feed, FeedMetrics metrics, FeedSnapshot previousSnapshot) throws Exception
+    {
+        RecurrenceExpansionCache expansionCache =
+            previousSnapshot != null ? previousSnapshot.getExpansionCache() : createExpansionCache();
+        FeedSnapshot snapshot;
+        FeedChangeLog changeLog = FeedChangeLog.start(feed.getContentHash());
+        long streamingMinFeedBytes = this.configuration.getStreamingMinFeedBytes();
+        if (streamingMinFeedBytes >= 0 && feed.getContent().length >= streamingMinFeedBytes) {
+            snapshot = new FeedSnapshot(feed, expansionCache);
+        } else {
+            long parseStart = System.nanoTime();
+            CalendarReader calendarReader = new CalendarReader(new ByteArrayInputStream(feed.getContent()));
+            List<CalendarComponent> events = calendarReader.getEvents();
+            EventIntervalIndex previousIndex = previousSnapshot == null ? null : previousSnapshot.getEventIndex();
+            EventIntervalIndex eventIndex;
+            if (previousIndex != null) {
+                EventDelta delta = new EventDelta(previousIndex.getEvents(), events);
+                this.logger.debug("Feed [{}] changed: [{}] events added or changed, [{}] unchanged, [{}] removed.",
+                    feed.getUrl(), delta.getChangedCount(), delta.getUnchangedCount(), delta.getRemovedCount());
+                eventIndex = new EventIntervalIndex(events, calendarReader.getZoneId(), this.dateProcessor,
+                    previousIndex, delta);
+                changeLog = previousSnapshot.getChangeLog().append(feed.getContentHash(), delta.getChangedUids(),
+                    this.configuration.getSyncMaxVersions());
+            } else {
+                eventIndex = new EventIntervalIndex(events, calendarReader.getZoneId(), this.dateProcessor);
+            }
+            metrics.recordParse(System.nanoTime() - parseStart, eventIndex.size());
+            snapshot = new FeedSnapshot(feed, calendarReader, eventIndex, expansionCache);
+        }
+        snapshot.setChangeLog(changeLog);
+        metrics.setExpansionCache(snapshot.getExpansionCache());
+        this.feedSnapshotCache.put(snapshot);
+        return snapshot;
+    }
+
+    private RecurrenceExpansionCache createExpansionCache()
+    {
+        long maxBytes = this.configuration.getRecurrenceCacheMaxBytes();
+        return maxBytes > 0 ? new RecurrenceExpansionCache(maxBytes) : null;
+    }
+}
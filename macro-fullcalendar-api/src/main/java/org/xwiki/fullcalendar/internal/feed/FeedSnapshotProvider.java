@@ -0,0 +1,178 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.fullcalendar.internal.feed;
+
+import java.net.URL;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+
+import javax.inject.Inject;
+import javax.inject.Singleton;
+
+import org.xwiki.component.annotation.Component;
+import org.xwiki.fullcalendar.internal.metrics.FeedMetrics;
+import org.xwiki.fullcalendar.internal.metrics.FeedMetricsRegistry;
+
+/**
+ * Provides the parsed version of the feeds, fetching and parsing them only when needed. Concurrent requests for the
+ * same feed share a single fetch and parse, the feeds stored before a restart are served until they are revalidated,
+ * and the requested feeds are registered for the background refresh.
+ *
+ * @version $Id$
+ * @since 2.5.5
+ */
+@Component(roles = FeedSnapshotProvider.class)
+@Singleton
+public class FeedSnapshotProvider
+{
+    /**
+     * The feeds currently being fetched and parsed, so that concurrent requests for the same feed share the work.
+     */
+    private final ConcurrentMap<String, CompletableFuture<FeedSnapshot>> snapshotLoads = new ConcurrentHashMap<>();
+
+    @Inject
+    private FeedFetcher feedFetcher;
+
+    @Inject
+    private FeedSnapshotCache feedSnapshotCache;
+
+    @Inject
+    private FeedSnapshotFactory feedSnapshotFactory;
+
+    @Inject
+    private FeedCache feedCache;
+
+    @Inject
+    private FeedStore feedStore;
+
+    @Inject
+    private FeedRefreshScheduler feedRefreshScheduler;
+
+    @Inject
+    private FeedMetricsRegistry feedMetricsRegistry;
+
+    /**
+     * Get the parsed version of a feed. When the background refresh is enabled, the last good snapshot is returned
+     * right away and revalidated asynchronously if it is stale; the upstream server is only waited for when the feed
+     * was never fetched, neither by this instance nor before a restart.
+     *
+     * @param iCalURL the feed URL
+     * @return the parsed feed
+     * @throws Exception if the feed cannot be fetched or parsed
+     */
+    public FeedSnapshot getCurrentFeedSnapshot(URL iCalURL) throws Exception
+    {
+        String url = iCalURL.toExternalForm();
+        Callable<FeedSnapshot> refreshTask = () -> getFeedSnapshot(iCalURL, false);
+
+        FeedSnapshot snapshot = this.feedRefreshScheduler.isEnabled() ? this.feedSnapshotCache.get(url) : null;
+        if (snapshot == null) {
+            snapshot = getFeedSnapshot(iCalURL, this.feedRefreshScheduler.isEnabled() && this.feedStore.isEnabled());
+        }
+        // Only poll the feeds that could be loaded.
+        this.feedRefreshScheduler.register(url, refreshTask);
+        if (this.feedRefreshScheduler.isEnabled()
+            && this.feedRefreshScheduler.isStale(snapshot.getValidationTime()))
+        {
+            this.feedRefreshScheduler.refreshNow(url, refreshTask);
+        }
+        return snapshot;
+    }
+
+    /**
+     * Get the parsed version of a feed. Concurrent callers asking for the same feed wait for a single fetch and parse
+     * and share its result.
+     *
+     * @param restore {@code true} to use the version of the feed stored before a restart, if any, instead of fetching
+     *     it
+     */
+    private FeedSnapshot getFeedSnapshot(URL iCalURL, boolean restore) throws Exception
+    {
+        String url = iCalURL.toExternalForm();
+        CompletableFuture<FeedSnapshot> newLoad = new CompletableFuture<>();
+        CompletableFuture<FeedSnapshot> load = this.snapshotLoads.putIfAbsent(url, newLoad);
+        if (load == null) {
+            load = newLoad;
+            try {
+                FeedSnapshot snapshot = restore ? restoreFeedSnapshot(url) : null;
+                newLoad.complete(snapshot != null ? snapshot : loadFeedSnapshot(iCalURL));
+            } catch (Exception e) {
+                newLoad.completeExceptionally(e);
+            } finally {
+                this.snapshotLoads.remove(url, newLoad);
+                // Release the waiting callers even if the load failed with an error. No-op if the load completed.
+                newLoad.cancel(false);
+            }
+        }
+
+        try {
+            return load.get();
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof Exception) {
+                throw (Exception) e.getCause();
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * Get the parsed version of a feed, parsing it only if its content changed since the last time it was parsed.
+     */
+    private FeedSnapshot loadFeedSnapshot(URL iCalURL) throws Exception
+    {
+        CachedFeed feed = this.feedFetcher.fetch(iCalURL);
+        FeedMetrics metrics = this.feedMetricsRegistry.get(feed.getUrl());
+        FeedSnapshot snapshot = this.feedSnapshotCache.get(feed.getUrl(), feed.getContentHash());
+        metrics.recordSnapshotCacheAccess(snapshot != null);
+        if (snapshot == null) {
+            // Reuse what was computed for the events that did not change since the previous version of the feed.
+            snapshot = this.feedSnapshotFactory.create(feed, metrics, this.feedSnapshotCache.get(feed.getUrl()));
+        } else {
+            snapshot.markValidated();
+        }
+        return snapshot;
+    }
+
+    /**
+     * Parse the version of a feed stored before a restart, keeping the time it was last validated so that it gets
+     * revalidated in the background as soon as it is stale.
+     *
+     * @return the parsed feed, or {@code null} if the feed is not stored
+     */
+    private FeedSnapshot restoreFeedSnapshot(String url) throws Exception
+    {
+        FeedStore.StoredFeed storedFeed = this.feedStore.load(url);
+        if (storedFeed == null) {
+            return null;
+        }
+
+        CachedFeed feed = storedFeed.getFeed();
+        if (feed.hasValidators() && this.feedCache.get(url) == null) {
+            // Allows the revalidation to be a conditional request.
+            this.feedCache.put(feed);
+        }
+        FeedSnapshot snapshot = this.feedSnapshotFactory.create(feed, this.feedMetricsRegistry.get(url), null);
+        snapshot.markValidated(storedFeed.getValidationTime());
+        return snapshot;
+    }
+}
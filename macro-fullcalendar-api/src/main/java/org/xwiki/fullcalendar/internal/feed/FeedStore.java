@@ -0,0 +1,386 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.fullcalendar.internal.feed;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.FileTime;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import javax.inject.Inject;
+import javax.inject.Provider;
+import javax.inject.Singleton;
+
+import org.apache.commons.codec.digest.DigestUtils;
+import org.apache.commons.lang3.concurrent.BasicThreadFactory;
+import org.slf4j.Logger;
+import org.xwiki.component.annotation.Component;
+import org.xwiki.component.phase.Disposable;
+import org.xwiki.component.phase.Initializable;
+import org.xwiki.environment.Environment;
+import org.xwiki.fullcalendar.internal.FullCalendarConfiguration;
+
+/**
+ * Stores the downloaded feeds in the permanent directory, so that they can be served right after a restart instead of
+ * waiting for the upstream servers. Each feed is kept in its own file, in a compact binary format read at once: a
+ * header, the URL, the content hash and the HTTP validators of the feed, followed by its raw content.
+ * The time the feed was last confirmed by its server is the modification time of the file. The files are written by a
+ * single background thread, so that fetching a feed never waits for the disk, and only when the feed changed. The same
+ * thread regularly deletes the files of the feeds that were not confirmed for longer than the time after which an
+ * unused feed stops being refreshed.
+ *
+ * @version $Id$
+ * @since 2.5.5
+ */
+@Component(roles = FeedStore.class)
+@Singleton
+public class FeedStore implements Initializable, Disposable
+{
+    private static final int MAGIC = 0x46434644;
+
+    private static final int FORMAT_VERSION = 2;
+
+    private static final int NULL_LENGTH = -1;
+
+    private static final String EXTENSION = ".feed";
+
+    private static final String TEMPORARY_EXTENSION = ".tmp";
+
+    @Inject
+    private Provider<Environment> environmentProvider;
+
+    @Inject
+    private FullCalendarConfiguration configuration;
+
+    @Inject
+    private Logger logger;
+
+    private volatile File directory;
+
+    private final Map<String, CachedFeed> pendingSaves = new ConcurrentHashMap<>();
+
+    private ScheduledExecutorService executor;
+
+    @Override
+    public void initialize()
+    {
+        this.executor = new ScheduledThreadPoolExecutor(1,
+            new BasicThreadFactory.Builder().namingPattern("FullCalendar feed store %d").daemon(true)
+                .priority(Thread.MIN_PRIORITY).build());
+        long sweepInterval = Math.max(1, this.configuration.getRefreshIdleTimeout());
+        this.executor.scheduleWithFixedDelay(this::sweep, 0, sweepInterval, TimeUnit.SECONDS);
+    }
+
+    @Override
+    public void dispose()
+    {
+        // Let the pending writes complete.
+        this.executor.shutdown();
+    }
+
+    /**
+     * @return {@code true} if the feeds are stored on disk
+     */
+    public boolean isEnabled()
+    {
+        return this.configuration.isPersistenceEnabled();
+    }
+
+    /**
+     * Store a downloaded feed in the background, replacing its previous version. Successive versions of a feed waiting
+     * to be written are merged, and the file is only rewritten if the content or the validators of the feed changed.
+     * The file is written next to the previous one and then moved over it, so that a crash never leaves a partial feed
+     * behind. Errors are only logged, since the store is only an optimization.
+     *
+     * @param feed the feed to store
+     */
+    public void save(CachedFeed feed)
+    {
+        if (!isEnabled()) {
+            return;
+        }
+
+        if (this.pendingSaves.put(feed.getUrl(), feed) == null) {
+            execute(() -> {
+                CachedFeed latestFeed = this.pendingSaves.remove(feed.getUrl());
+                if (latestFeed != null) {
+                    write(latestFeed);
+                }
+            });
+        }
+    }
+
+    private void write(CachedFeed feed)
+    {
+        Path path = getPath(feed.getUrl());
+        if (isStored(path, feed)) {
+            // Same content: the download only confirmed the stored version.
+            touch(path);
+            return;
+        }
+
+        Path temporaryPath = path.resolveSibling(path.getFileName() + TEMPORARY_EXTENSION);
+        try {
+            Files.createDirectories(path.getParent());
+            try (DataOutputStream output =
+                new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temporaryPath))))
+            {
+                output.writeInt(MAGIC);
+                output.writeInt(FORMAT_VERSION);
+                writeString(output, feed.getUrl());
+                writeString(output, feed.getContentHash());
+                writeString(output, feed.getETag());
+                writeString(output, feed.getLastModified());
+                output.writeInt(feed.getContent().length);
+                output.write(feed.getContent());
+            }
+            Files.move(temporaryPath, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            this.logger.warn("Failed to store feed [{}] in [{}]. Root cause: [{}]", feed.getUrl(), path,
+                e.getMessage());
+            try {
+                Files.deleteIfExists(temporaryPath);
+            } catch (IOException deleteException) {
+                this.logger.debug("Failed to delete [{}].", temporaryPath, deleteException);
+            }
+        }
+    }
+
+    private boolean isStored(Path path, CachedFeed feed)
+    {
+        try (DataInputStream input = new DataInputStream(new BufferedInputStream(Files.newInputStream(path)))) {
+            return input.readInt() == MAGIC && input.readInt() == FORMAT_VERSION
+                && feed.getUrl().equals(readString(input)) && feed.getContentHash().equals(readString(input))
+                && Objects.equals(feed.getETag(), readString(input))
+                && Objects.equals(feed.getLastModified(), readString(input));
+        } catch (NoSuchFileException e) {
+            return false;
+        } catch (IOException e) {
+            this.logger.debug("Failed to read the header of [{}].", path, e);
+            return false;
+        }
+    }
+
+    /**
+     * Record in the background that the server confirmed the stored version of a feed.
+     *
+     * @param url the feed URL, in its external form
+     */
+    public void markValidated(String url)
+    {
+        if (!isEnabled()) {
+            return;
+        }
+
+        execute(() -> touch(getPath(url)));
+    }
+
+    private void execute(Runnable task)
+    {
+        try {
+            this.executor.execute(task);
+        } catch (RejectedExecutionException e) {
+            // Disposed.
+        }
+    }
+
+    private void touch(Path path)
+    {
+        try {
+            Files.setLastModifiedTime(path, FileTime.fromMillis(System.currentTimeMillis()));
+        } catch (IOException e) {
+            this.logger.debug("Failed to update the validation time of [{}].", path, e);
+        }
+    }
+
+    /**
+     * Load the stored version of a feed. Feeds that were not confirmed by their server for longer than the time after
+     * which an unused feed stops being refreshed are considered abandoned and deleted.
+     *
+     * @param url the feed URL, in its external form
+     * @return the stored feed, or {@code null} if the feed is not stored
+     */
+    public StoredFeed load(String url)
+    {
+        if (!isEnabled()) {
+            return null;
+        }
+
+        Path path = getPath(url);
+        try {
+            long validationTime = Files.getLastModifiedTime(path).toMillis();
+            long maxAge = TimeUnit.SECONDS.toMillis(this.configuration.getRefreshIdleTimeout());
+            if (System.currentTimeMillis() - validationTime > maxAge) {
+                delete(path);
+                return null;
+            }
+
+            // Not memory mapped: a mapping lives until garbage collected and prevents replacing the file on Windows.
+            ByteBuffer buffer = ByteBuffer.wrap(Files.readAllBytes(path));
+            if (buffer.getInt() != MAGIC || buffer.getInt() != FORMAT_VERSION || !url.equals(readString(buffer))) {
+                this.logger.debug("Ignoring [{}] which does not hold feed [{}].", path, url);
+                return null;
+            }
+            // The content hash is recomputed from the content.
+            readString(buffer);
+            String eTag = readString(buffer);
+            String lastModified = readString(buffer);
+            byte[] content = new byte[buffer.getInt()];
+            buffer.get(content);
+            return new StoredFeed(new CachedFeed(url, content, eTag, lastModified), validationTime);
+        } catch (NoSuchFileException e) {
+            return null;
+        } catch (IOException | RuntimeException e) {
+            this.logger.warn("Failed to load stored feed [{}] from [{}]. Root cause: [{}]", url, path,
+                e.getMessage());
+            delete(path);
+            return null;
+        }
+    }
+
+    private void sweep()
+    {
+        if (!isEnabled() || !getDirectory().isDirectory()) {
+            return;
+        }
+
+        long maxAge = TimeUnit.SECONDS.toMillis(this.configuration.getRefreshIdleTimeout());
+        long now = System.currentTimeMillis();
+        try (DirectoryStream<Path> paths =
+            Files.newDirectoryStream(getDirectory().toPath(), "*{" + EXTENSION + ',' + TEMPORARY_EXTENSION + '}'))
+        {
+            for (Path path : paths) {
+                if (now - Files.getLastModifiedTime(path).toMillis() > maxAge) {
+                    delete(path);
+                    this.logger.debug("Deleted abandoned feed file [{}].", path);
+                }
+            }
+        } catch (IOException | RuntimeException e) {
+            // Never let an exception cancel the next sweeps.
+            this.logger.warn("Failed to delete the abandoned feed files. Root cause: [{}]", e.getMessage());
+        }
+    }
+
+    private void delete(Path path)
+    {
+        try {
+            Files.deleteIfExists(path);
+        } catch (IOException e) {
+            this.logger.debug("Failed to delete [{}].", path, e);
+        }
+    }
+
+    private Path getPath(String url)
+    {
+        return new File(getDirectory(), DigestUtils.sha256Hex(url) + EXTENSION).toPath();
+    }
+
+    private File getDirectory()
+    {
+        if (this.directory == null) {
+            this.directory = new File(this.environmentProvider.get().getPermanentDirectory(), "fullcalendar/feeds");
+        }
+        return this.directory;
+    }
+
+    private static void writeString(DataOutputStream output, String value) throws IOException
+    {
+        if (value == null) {
+            output.writeInt(NULL_LENGTH);
+        } else {
+            byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+            output.writeInt(bytes.length);
+            output.write(bytes);
+        }
+    }
+
+    private static String readString(DataInputStream input) throws IOException
+    {
+        int length = input.readInt();
+        if (length == NULL_LENGTH) {
+            return null;
+        }
+        byte[] bytes = new byte[length];
+        input.readFully(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private static String readString(ByteBuffer buffer)
+    {
+        int length = buffer.getInt();
+        if (length == NULL_LENGTH) {
+            return null;
+        }
+        byte[] bytes = new byte[length];
+        buffer.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * A feed loaded from the store, with the time it was last confirmed by its server.
+     *
+     * @version $Id$
+     */
+    public static class StoredFeed
+    {
+        private final CachedFeed feed;
+
+        private final long validationTime;
+
+        StoredFeed(CachedFeed feed, long validationTime)
+        {
+            this.feed = feed;
+            this.validationTime = validationTime;
+        }
+
+        /**
+         * @return the stored feed
+         */
+        public CachedFeed getFeed()
+        {
+            return this.feed;
+        }
+
+        /**
+         * @return the time the server last confirmed the stored version of the feed, in milliseconds since the epoch
+         */
+        public long getValidationTime()
+        {
+            return this.validationTime;
+        }
+    }
+}
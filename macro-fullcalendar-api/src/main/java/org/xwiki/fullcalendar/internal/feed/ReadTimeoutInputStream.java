@@ -0,0 +1,138 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.fullcalendar.internal.feed;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.SocketTimeoutException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Bounds the time spent waiting for each read of a stream that has no read timeout of its own, such as the body of a
+ * response of the HTTP client, which is only bounded by the timeout of the headers. A read that takes too long is
+ * stopped by interrupting the reading thread, and fails with a {@link SocketTimeoutException}.
+ *
+ * @version $Id$
+ * @since 2.5.5
+ */
+public class ReadTimeoutInputStream extends FilterInputStream
+{
+    private final long timeout;
+
+    private final ScheduledExecutorService watchdog;
+
+    private Thread reader;
+
+    private boolean timedOut;
+
+    @FunctionalInterface
+    private interface Read
+    {
+        int read() throws IOException;
+    }
+
+    /**
+     * @param in the stream to read
+     * @param timeout the maximum time to wait for each read, in milliseconds
+     * @param watchdog the executor stopping the reads that take too long
+     */
+    public ReadTimeoutInputStream(InputStream in, long timeout, ScheduledExecutorService watchdog)
+    {
+        super(in);
+        this.timeout = timeout;
+        this.watchdog = watchdog;
+    }
+
+    @Override
+    public int read() throws IOException
+    {
+        return read(super::read);
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException
+    {
+        return read(() -> super.read(b, off, len));
+    }
+
+    @Override
+    public long skip(long n) throws IOException
+    {
+        // Skipping reads the stream too.
+        long[] skipped = new long[1];
+        read(() -> {
+            skipped[0] = super.skip(n);
+            return 0;
+        });
+        return skipped[0];
+    }
+
+    private int read(Read read) throws IOException
+    {
+        ScheduledFuture<?> timeoutTask = startRead();
+        try {
+            return read.read();
+        } catch (IOException e) {
+            if (endRead(timeoutTask)) {
+                SocketTimeoutException timeoutException =
+                    new SocketTimeoutException(String.format("Read timed out after [%d] ms.", this.timeout));
+                timeoutException.initCause(e);
+                throw timeoutException;
+            }
+            throw e;
+        } finally {
+            endRead(timeoutTask);
+        }
+    }
+
+    private synchronized ScheduledFuture<?> startRead()
+    {
+        this.reader = Thread.currentThread();
+        this.timedOut = false;
+        return this.watchdog.schedule(this::timeOut, this.timeout, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * @return {@code true} if the read timed out
+     */
+    private synchronized boolean endRead(ScheduledFuture<?> timeoutTask)
+    {
+        timeoutTask.cancel(false);
+        this.reader = null;
+        boolean result = this.timedOut;
+        if (result) {
+            // The interruption was only meant to stop the read.
+            Thread.interrupted();
+            this.timedOut = false;
+        }
+        return result;
+    }
+
+    private synchronized void timeOut()
+    {
+        if (this.reader != null) {
+            this.timedOut = true;
+            this.reader.interrupt();
+        }
+    }
+}
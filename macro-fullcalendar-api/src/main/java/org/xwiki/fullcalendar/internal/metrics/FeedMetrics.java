@@ -0,0 +1,311 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.fullcalendar.internal.metrics;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.xwiki.fullcalendar.internal.util.RecurrenceExpansionCache;
+
+/**
+ * The metrics of an iCal feed. All the methods are thread safe.
+ *
+ * @version $Id$
+ * @since 2.5.5
+ */
+public class FeedMetrics implements FeedMetricsMXBean
+{
+    private static final double NANOS_PER_MILLI = TimeUnit.MILLISECONDS.toNanos(1);
+
+    private final String url;
+
+    private final Timer fetchTimer = new Timer();
+
+    private final LongAdder fetchFailures = new LongAdder();
+
+    private final LongAdder bytesDownloaded = new LongAdder();
+
+    private final LongAdder notModified = new LongAdder();
+
+    private final Timer parseTimer = new Timer();
+
+    private volatile long eventCount;
+
+    private final LongAdder snapshotCacheHits = new LongAdder();
+
+    private final LongAdder snapshotCacheMisses = new LongAdder();
+
+    private final Timer expansionTimer = new Timer();
+
+    private final LongAdder instances = new LongAdder();
+
+    private final Timer serializationTimer = new Timer();
+
+    private volatile RecurrenceExpansionCache expansionCache;
+
+    /**
+     * Counts and sums durations, keeping the longest one.
+     */
+    private static final class Timer
+    {
+        private final LongAdder count = new LongAdder();
+
+        private final LongAdder total = new LongAdder();
+
+        private final LongAccumulator max = new LongAccumulator(Math::max, 0);
+
+        void record(long nanos)
+        {
+            this.count.increment();
+            this.total.add(nanos);
+            this.max.accumulate(nanos);
+        }
+    }
+
+    /**
+     * @param url the feed URL
+     */
+    public FeedMetrics(String url)
+    {
+        this.url = url;
+    }
+
+    /**
+     * @param nanos the time spent waiting for the upstream server
+     * @param success {@code false} if the request failed
+     */
+    public void recordFetch(long nanos, boolean success)
+    {
+        this.fetchTimer.record(nanos);
+        if (!success) {
+            this.fetchFailures.increment();
+        }
+    }
+
+    /**
+     * @param bytes the number of bytes downloaded
+     */
+    public void recordDownload(long bytes)
+    {
+        this.bytesDownloaded.add(bytes);
+    }
+
+    /**
+     * Record that the upstream server confirmed that the cached content was still valid.
+     */
+    public void recordNotModified()
+    {
+        this.notModified.increment();
+    }
+
+    /**
+     * @param nanos the time spent parsing the feed
+     * @param events the number of events of the parsed feed
+     */
+    public void recordParse(long nanos, int events)
+    {
+        this.parseTimer.record(nanos);
+        this.eventCount = events;
+    }
+
+    /**
+     * @param hit {@code true} if the parsed feed was reused, {@code false} if the feed had to be parsed
+     */
+    public void recordSnapshotCacheAccess(boolean hit)
+    {
+        if (hit) {
+            this.snapshotCacheHits.increment();
+        } else {
+            this.snapshotCacheMisses.increment();
+        }
+    }
+
+    /**
+     * @param expansionNanos the time spent computing the events and recurrence instances
+     * @param serializationNanos the time spent writing the events as JSON
+     * @param instanceCount the number of events and recurrence instances returned
+     */
+    public void recordRequest(long expansionNanos, long serializationNanos, long instanceCount)
+    {
+        this.expansionTimer.record(expansionNanos);
+        this.serializationTimer.record(serializationNanos);
+        this.instances.add(instanceCount);
+    }
+
+    /**
+     * @param expansionCache the expansion cache of the current version of the feed, {@code null} if there is none
+     */
+    public void setExpansionCache(RecurrenceExpansionCache expansionCache)
+    {
+        this.expansionCache = expansionCache;
+    }
+
+    @Override
+    public String getUrl()
+    {
+        return this.url;
+    }
+
+    @Override
+    public long getFetchCount()
+    {
+        return this.fetchTimer.count.sum();
+    }
+
+    @Override
+    public long getFetchFailureCount()
+    {
+        return this.fetchFailures.sum();
+    }
+
+    @Override
+    public double getFetchTimeTotal()
+    {
+        return toMillis(this.fetchTimer.total.sum());
+    }
+
+    @Override
+    public double getFetchTimeMax()
+    {
+        return toMillis(this.fetchTimer.max.get());
+    }
+
+    @Override
+    public long getBytesDownloaded()
+    {
+        return this.bytesDownloaded.sum();
+    }
+
+    @Override
+    public long getNotModifiedCount()
+    {
+        return this.notModified.sum();
+    }
+
+    @Override
+    public long getParseCount()
+    {
+        return this.parseTimer.count.sum();
+    }
+
+    @Override
+    public double getParseTimeTotal()
+    {
+        return toMillis(this.parseTimer.total.sum());
+    }
+
+    @Override
+    public double getParseTimeMax()
+    {
+        return toMillis(this.parseTimer.max.get());
+    }
+
+    @Override
+    public long getEventCount()
+    {
+        return this.eventCount;
+    }
+
+    @Override
+    public long getSnapshotCacheHitCount()
+    {
+        return this.snapshotCacheHits.sum();
+    }
+
+    @Override
+    public long getSnapshotCacheMissCount()
+    {
+        return this.snapshotCacheMisses.sum();
+    }
+
+    @Override
+    public double getSnapshotCacheHitRatio()
+    {
+        return getRatio(getSnapshotCacheHitCount(), getSnapshotCacheMissCount());
+    }
+
+    @Override
+    public long getRequestCount()
+    {
+        return this.expansionTimer.count.sum();
+    }
+
+    @Override
+    public double getExpansionTimeTotal()
+    {
+        return toMillis(this.expansionTimer.total.sum());
+    }
+
+    @Override
+    public double getExpansionTimeMax()
+    {
+        return toMillis(this.expansionTimer.max.get());
+    }
+
+    @Override
+    public long getInstanceCount()
+    {
+        return this.instances.sum();
+    }
+
+    @Override
+    public double getSerializationTimeTotal()
+    {
+        return toMillis(this.serializationTimer.total.sum());
+    }
+
+    @Override
+    public double getSerializationTimeMax()
+    {
+        return toMillis(this.serializationTimer.max.get());
+    }
+
+    @Override
+    public long getExpansionCacheHitCount()
+    {
+        RecurrenceExpansionCache cache = this.expansionCache;
+        return cache == null ? 0 : cache.getHitCount();
+    }
+
+    @Override
+    public long getExpansionCacheMissCount()
+    {
+        RecurrenceExpansionCache cache = this.expansionCache;
+        return cache == null ? 0 : cache.getMissCount();
+    }
+
+    @Override
+    public double getExpansionCacheHitRatio()
+    {
+        return getRatio(getExpansionCacheHitCount(), getExpansionCacheMissCount());
+    }
+
+    private double toMillis(long nanos)
+    {
+        return nanos / NANOS_PER_MILLI;
+    }
+
+    private double getRatio(long hits, long misses)
+    {
+        long total = hits + misses;
+        return total == 0 ? 0 : (double) hits / total;
+    }
+}
@@ -0,0 +1,145 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.fullcalendar.internal.metrics;
+
+/**
+ * Management interface exposing the cost of an iCal feed through JMX. The times are in milliseconds and the counters
+ * are cumulated since the feed was first requested.
+ *
+ * @version $Id$
+ * @since 2.5.5
+ */
+public interface FeedMetricsMXBean
+{
+    /**
+     * @return the feed URL
+     */
+    String getUrl();
+
+    /**
+     * @return the number of requests to the upstream server
+     */
+    long getFetchCount();
+
+    /**
+     * @return the number of requests to the upstream server that failed
+     */
+    long getFetchFailureCount();
+
+    /**
+     * @return the total time spent waiting for the upstream server
+     */
+    double getFetchTimeTotal();
+
+    /**
+     * @return the longest time spent waiting for the upstream server
+     */
+    double getFetchTimeMax();
+
+    /**
+     * @return the number of bytes downloaded from the upstream server
+     */
+    long getBytesDownloaded();
+
+    /**
+     * @return the number of times the upstream server confirmed that the cached content was still valid
+     */
+    long getNotModifiedCount();
+
+    /**
+     * @return the number of times the feed was parsed
+     */
+    long getParseCount();
+
+    /**
+     * @return the total time spent parsing the feed
+     */
+    double getParseTimeTotal();
+
+    /**
+     * @return the longest time spent parsing the feed
+     */
+    double getParseTimeMax();
+
+    /**
+     * @return the number of events of the feed the last time it was parsed
+     */
+    long getEventCount();
+
+    /**
+     * @return the number of times the downloaded content was unchanged, so the parsed feed was reused
+     */
+    long getSnapshotCacheHitCount();
+
+    /**
+     * @return the number of times the downloaded content was new, so the feed had to be parsed
+     */
+    long getSnapshotCacheMissCount();
+
+    /**
+     * @return the fraction of the downloads that reused the parsed feed
+     */
+    double getSnapshotCacheHitRatio();
+
+    /**
+     * @return the number of requests for the events of the feed
+     */
+    long getRequestCount();
+
+    /**
+     * @return the total time spent computing the events and recurrence instances of the requests
+     */
+    double getExpansionTimeTotal();
+
+    /**
+     * @return the longest time spent computing the events and recurrence instances of a request
+     */
+    double getExpansionTimeMax();
+
+    /**
+     * @return the total number of events and recurrence instances returned
+     */
+    long getInstanceCount();
+
+    /**
+     * @return the total time spent writing the events as JSON
+     */
+    double getSerializationTimeTotal();
+
+    /**
+     * @return the longest time spent writing the events of a request as JSON
+     */
+    double getSerializationTimeMax();
+
+    /**
+     * @return the number of recurrences found in the expansion cache, since the last change of the feed
+     */
+    long getExpansionCacheHitCount();
+
+    /**
+     * @return the number of recurrences missing from the expansion cache, since the last change of the feed
+     */
+    long getExpansionCacheMissCount();
+
+    /**
+     * @return the fraction of the recurrences found in the expansion cache, since the last change of the feed
+     */
+    double getExpansionCacheHitRatio();
+}
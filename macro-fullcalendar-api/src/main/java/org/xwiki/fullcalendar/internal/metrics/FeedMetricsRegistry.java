@@ -0,0 +1,149 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.fullcalendar.internal.metrics;
+
+import java.lang.management.ManagementFactory;
+import java.net.URI;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import javax.inject.Inject;
+import javax.inject.Singleton;
+import javax.management.JMException;
+import javax.management.ObjectName;
+
+import org.apache.commons.codec.digest.DigestUtils;
+import org.apache.commons.lang3.StringUtils;
+import org.apache.commons.lang3.exception.ExceptionUtils;
+import org.slf4j.Logger;
+import org.xwiki.component.annotation.Component;
+import org.xwiki.component.phase.Disposable;
+import org.xwiki.fullcalendar.internal.FullCalendarConfiguration;
+
+/**
+ * Keeps the metrics of each requested iCal feed and exposes them through JMX, as
+ * {@code org.xwiki.fullcalendar:type=Feed,host="<feed host>",name=<hash of the feed URL>}, so that the feeds that cost
+ * the most can be found. The URL, which may hold secret tokens, is only exposed as an attribute. The metrics of the
+ * least recently requested feeds are dropped when there are too many of them.
+ *
+ * @version $Id$
+ * @since 2.5.5
+ */
+@Component(roles = FeedMetricsRegistry.class)
+@Singleton
+public class FeedMetricsRegistry implements Disposable
+{
+    private static final String OBJECT_NAME_FORMAT = "org.xwiki.fullcalendar:type=Feed,host=%s,name=%s";
+
+    private static final int NAME_LENGTH = 16;
+
+    private static final int INITIAL_CAPACITY = 16;
+
+    private static final float LOAD_FACTOR = 0.75f;
+
+    private final Map<String, FeedMetrics> feeds = new LinkedHashMap<>(INITIAL_CAPACITY, LOAD_FACTOR, true);
+
+    @Inject
+    private FullCalendarConfiguration configuration;
+
+    @Inject
+    private Logger logger;
+
+    /**
+     * @param url the feed URL, in its external form
+     * @return the metrics of the feed
+     */
+    public FeedMetrics get(String url)
+    {
+        // The MBeans are registered under the lock too, so that they always match the metrics in the map.
+        synchronized (this.feeds) {
+            FeedMetrics metrics = this.feeds.get(url);
+            if (metrics != null) {
+                return metrics;
+            }
+            metrics = new FeedMetrics(url);
+            this.feeds.put(url, metrics);
+            int maxFeeds = Math.max(1, this.configuration.getMetricsMaxFeeds());
+            Iterator<String> iterator = this.feeds.keySet().iterator();
+            while (this.feeds.size() > maxFeeds && iterator.hasNext()) {
+                unregister(iterator.next());
+                iterator.remove();
+            }
+            register(metrics);
+            return metrics;
+        }
+    }
+
+    /**
+     * Drop the metrics of a feed that is not used anymore.
+     *
+     * @param url the feed URL, in its external form
+     */
+    public void remove(String url)
+    {
+        synchronized (this.feeds) {
+            if (this.feeds.remove(url) != null) {
+                unregister(url);
+            }
+        }
+    }
+
+    @Override
+    public void dispose()
+    {
+        synchronized (this.feeds) {
+            this.feeds.keySet().forEach(this::unregister);
+            this.feeds.clear();
+        }
+    }
+
+    private void register(FeedMetrics metrics)
+    {
+        try {
+            ManagementFactory.getPlatformMBeanServer().registerMBean(metrics, getObjectName(metrics.getUrl()));
+        } catch (JMException e) {
+            this.logger.warn("Failed to expose the metrics of feed [{}] through JMX. Cause: [{}]", metrics.getUrl(),
+                ExceptionUtils.getRootCauseMessage(e));
+        }
+    }
+
+    private void unregister(String url)
+    {
+        try {
+            ManagementFactory.getPlatformMBeanServer().unregisterMBean(getObjectName(url));
+        } catch (JMException e) {
+            this.logger.debug("Failed to unregister the metrics of feed [{}]. Cause: [{}]", url,
+                ExceptionUtils.getRootCauseMessage(e));
+        }
+    }
+
+    private ObjectName getObjectName(String url) throws JMException
+    {
+        String host;
+        try {
+            host = StringUtils.defaultString(URI.create(url).getHost());
+        } catch (IllegalArgumentException e) {
+            host = "";
+        }
+        return new ObjectName(String.format(OBJECT_NAME_FORMAT, ObjectName.quote(host),
+            DigestUtils.sha256Hex(url).substring(0, NAME_LENGTH)));
+    }
+}
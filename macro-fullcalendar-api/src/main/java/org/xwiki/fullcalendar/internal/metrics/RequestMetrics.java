@@ -0,0 +1,60 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.fullcalendar.internal.metrics;
+
+/**
+ * Measures the JSON writing of the events of a single request, which is interleaved with their computation when the
+ * events are streamed. This class is not thread safe.
+ *
+ * @version $Id$
+ * @since 2.5.5
+ */
+public class RequestMetrics
+{
+    private long serializationNanos;
+
+    private long instanceCount;
+
+    /**
+     * @param nanos the time spent writing some events
+     * @param count the number of written events
+     */
+    public void addSerialization(long nanos, int count)
+    {
+        this.serializationNanos += nanos;
+        this.instanceCount += count;
+    }
+
+    /**
+     * @return the time spent writing the events
+     */
+    public long getSerializationNanos()
+    {
+        return this.serializationNanos;
+    }
+
+    /**
+     * @return the number of written events
+     */
+    public long getInstanceCount()
+    {
+        return this.instanceCount;
+    }
+}
@@ -0,0 +1,194 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.fullcalendar.internal.util;
+
+import java.io.IOException;
+import java.time.temporal.Temporal;
+import java.util.ArrayList;
+import java.util.List;
+
+import javax.inject.Inject;
+import javax.inject.Singleton;
+
+import org.slf4j.Logger;
+import org.xwiki.component.annotation.Component;
+import org.xwiki.fullcalendar.model.CalendarEvent;
+
+import net.fortuna.ical4j.model.Property;
+import net.fortuna.ical4j.model.component.CalendarComponent;
+import net.fortuna.ical4j.model.component.VEvent;
+import net.fortuna.ical4j.model.property.RecurrenceId;
+
+/**
+ * Builds the FullCalendar events of the events of a calendar, expanding or collapsing their recurrences. Large
+ * calendars are processed in parallel.
+ *
+ * @version $Id$
+ * @since 2.5.5
+ */
+@Component(roles = CalendarEventsBuilder.class)
+@Singleton
+public class CalendarEventsBuilder
+{
+    @Inject
+    private RecurrenceProcessor recurrenceProcessor;
+
+    @Inject
+    private EventProcessor eventProcessor;
+
+    @Inject
+    private ParallelEventProcessor parallelEventProcessor;
+
+    @Inject
+    private Logger logger;
+
+    /**
+     * Receives the events built for a few source events at a time.
+     *
+     * @version $Id$
+     */
+    @FunctionalInterface
+    public interface EventBatchConsumer
+    {
+        /**
+         * @param events the built events, in the order of their source events
+         * @throws IOException if the events cannot be written
+         */
+        void accept(List<CalendarEvent> events) throws IOException;
+    }
+
+    /**
+     * @param overrideIndex the events of the calendar
+     * @param context the state of the processing of the calendar events
+     * @return all the events of the calendar, with the modified instances attached to their recurring event when the
+     *     recurring events are collapsed
+     */
+    public List<CalendarEvent> getCalendarEvents(OverrideIndex overrideIndex, EventProcessingContext context)
+    {
+        List<CalendarEvent> calendarEvents = new ArrayList<>();
+        if (context.isCollapse()) {
+            // The modified instances are attached to their recurrent event once all the other events are processed.
+            addEvents(overrideIndex.getPrimaryEvents(), context, calendarEvents);
+            addModifiedInstances(overrideIndex, context);
+        } else {
+            addEvents(overrideIndex.getEvents(), context, calendarEvents);
+        }
+        return calendarEvents;
+    }
+
+    /**
+     * Build the expanded events one source event at a time, so that only the instances of a single recurrence are
+     * held in memory. Large calendars are processed in parallel, one batch of events at a time.
+     *
+     * @param events the source events
+     * @param context the state of the processing of the calendar events
+     * @param consumer receives the built events, in the order of their source events
+     * @throws IOException if the consumer fails
+     */
+    public void expandEvents(List<CalendarComponent> events, EventProcessingContext context,
+        EventBatchConsumer consumer) throws IOException
+    {
+        if (this.parallelEventProcessor.isParallel(events.size())) {
+            int batchSize = this.parallelEventProcessor.getBatchSize();
+            for (int from = 0; from < events.size(); from += batchSize) {
+                List<CalendarComponent> batch = events.subList(from, Math.min(events.size(), from + batchSize));
+                List<CalendarEvent> eventInstances = this.parallelEventProcessor.process(batch,
+                    (eventComponent, eventResults) -> addEvent(eventComponent, context, eventResults));
+                if (!eventInstances.isEmpty()) {
+                    consumer.accept(eventInstances);
+                }
+            }
+        } else {
+            List<CalendarEvent> eventInstances = new ArrayList<>();
+            for (CalendarComponent eventComponent : events) {
+                addEvent(eventComponent, context, eventInstances);
+                if (!eventInstances.isEmpty()) {
+                    consumer.accept(eventInstances);
+                    eventInstances.clear();
+                }
+            }
+        }
+    }
+
+    private void addEvents(List<CalendarComponent> events, EventProcessingContext context,
+        List<CalendarEvent> jsonArrayList)
+    {
+        if (this.parallelEventProcessor.isParallel(events.size())) {
+            jsonArrayList.addAll(this.parallelEventProcessor.process(events,
+                (eventComponent, eventResults) -> addEvent(eventComponent, context, eventResults)));
+        } else {
+            for (CalendarComponent eventComponent : events) {
+                addEvent(eventComponent, context, jsonArrayList);
+            }
+        }
+    }
+
+    /**
+     * Attach the modified instances to their recurrent event, looking it up by UID.
+     */
+    private void addModifiedInstances(OverrideIndex overrideIndex, EventProcessingContext context)
+    {
+        overrideIndex.getOverrides().forEach((uid, modifiedInstances) -> {
+            CalendarEvent recurringEvent = context.getCollapsedEvent(uid);
+            if (recurringEvent != null) {
+                for (CalendarComponent modifiedInstance : modifiedInstances) {
+                    addModifiedInstance((VEvent) modifiedInstance, recurringEvent, context);
+                }
+            }
+        });
+    }
+
+    private void addModifiedInstance(VEvent event, CalendarEvent recurringEvent, EventProcessingContext context)
+    {
+        try {
+            CalendarEvent jsonMap = new CalendarEvent();
+            if (this.eventProcessor.addEventPeriod(event, jsonMap, context.getZoneId())) {
+                this.eventProcessor.addBasicEventProperties(jsonMap, event, context.getStringInterner());
+                RecurrenceId<Temporal> recurrenceId = (RecurrenceId) event.getProperty(Property.RECURRENCE_ID).get();
+                this.recurrenceProcessor.addRecurrentModifiedInstance(recurringEvent, jsonMap, recurrenceId,
+                    context.getZoneId());
+            }
+        } catch (Exception e) {
+            this.logger.error("Error while processing a calendar event. Cause:", e);
+        }
+    }
+
+    private void addEvent(CalendarComponent eventComponent, EventProcessingContext context,
+        List<CalendarEvent> jsonArrayList)
+    {
+        try {
+            VEvent event = (VEvent) eventComponent;
+            CalendarEvent jsonMap = new CalendarEvent();
+            if (!this.eventProcessor.addEventPeriod(event, jsonMap, context.getZoneId())) {
+                return;
+            }
+            this.eventProcessor.addBasicEventProperties(jsonMap, event, context.getStringInterner());
+            // If the interval dates are null and the collapse flag is false, we don't check for recurring events.
+            // Done to maintain backwards compatibility.
+            if (!context.isCollapse() && !context.hasInterval()) {
+                jsonArrayList.add(jsonMap);
+                return;
+            }
+            this.recurrenceProcessor.checkRRule(context, jsonArrayList, event, jsonMap);
+        } catch (Exception e) {
+            this.logger.error("Error while processing a calendar event. Cause:", e);
+        }
+    }
+}
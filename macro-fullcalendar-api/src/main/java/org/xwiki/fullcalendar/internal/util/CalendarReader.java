@@ -20,14 +20,17 @@
 package org.xwiki.fullcalendar.internal.util;
 
 import java.io.InputStream;
+import java.io.Reader;
 import java.io.StringReader;
 import java.net.URL;
 import java.net.URLConnection;
 import java.nio.charset.StandardCharsets;
 import java.time.DateTimeException;
 import java.time.ZoneId;
+import java.util.Date;
 import java.util.List;
 import java.util.Optional;
+import java.util.concurrent.atomic.AtomicReference;
 
 import org.apache.commons.io.IOUtils;
 import org.apache.commons.lang3.exception.ExceptionUtils;
@@ -36,6 +39,9 @@ import org.slf4j.LoggerFactory;
 import org.xwiki.stability.Unstable;
 
 import net.fortuna.ical4j.data.CalendarBuilder;
+import net.fortuna.ical4j.data.CalendarParserFactory;
+import net.fortuna.ical4j.data.DefaultContentHandler;
+import net.fortuna.ical4j.data.UnfoldingReader;
 import net.fortuna.ical4j.model.Calendar;
 import net.fortuna.ical4j.model.TimeZone;
 import net.fortuna.ical4j.model.component.CalendarComponent;
@@ -81,6 +87,48 @@ public class CalendarReader
         this.processCalendarFromFile(iCalFile);
     }
 
+    /**
+     * Read the {@link Calendar} from a stream, using relaxed parsing like for the calendars read from a URL.
+     *
+     * @param iCalStream the iCal content, encoded in UTF-8.
+     * @throws Exception if the content format is incorrect, or if it contains malformed dates.
+     * @since 2.5.5
+     */
+    public CalendarReader(InputStream iCalStream) throws Exception
+    {
+        builder = new CalendarBuilder();
+        CompatibilityHints.setHintEnabled(CompatibilityHints.KEY_RELAXED_PARSING, true);
+        this.calendar = builder.build(iCalStream);
+    }
+
+    /**
+     * Read the {@link Calendar} from a stream, keeping only the events that can occur in the given interval, i.e. the
+     * recurring events, their modified instances and the single events intersecting the interval. The content is
+     * streamed through the parser, so the events outside the interval are never built. If any of the interval
+     * bounds is missing, the whole calendar is read.
+     *
+     * @param iCalReader the iCal content.
+     * @param intervalStart the start of the interval.
+     * @param intervalEnd the end of the interval.
+     * @throws Exception if the content format is incorrect, or if it contains malformed dates.
+     * @since 2.5.5
+     */
+    public CalendarReader(Reader iCalReader, Date intervalStart, Date intervalEnd) throws Exception
+    {
+        builder = new CalendarBuilder();
+        CompatibilityHints.setHintEnabled(CompatibilityHints.KEY_RELAXED_PARSING, true);
+        if (intervalStart == null || intervalEnd == null) {
+            this.calendar = builder.build(iCalReader);
+        } else {
+            AtomicReference<Calendar> calendarReference = new AtomicReference<>();
+            WindowFilteringContentHandler contentHandler = new WindowFilteringContentHandler(
+                new DefaultContentHandler(calendarReference::set, builder.getRegistry()), intervalStart.getTime(),
+                intervalEnd.getTime());
+            CalendarParserFactory.getInstance().get().parse(new UnfoldingReader(iCalReader), contentHandler);
+            this.calendar = calendarReference.get();
+        }
+    }
+
     /**
      * Get the calendar events.
      *
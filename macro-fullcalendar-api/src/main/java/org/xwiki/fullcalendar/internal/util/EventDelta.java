@@ -0,0 +1,172 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.fullcalendar.internal.util;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+
+import net.fortuna.ical4j.model.Property;
+import net.fortuna.ical4j.model.component.CalendarComponent;
+
+/**
+ * The differences between two versions of the events of a calendar. Events are matched by UID and
+ * {@code RECURRENCE-ID}, and a matched event is considered unchanged when its {@code SEQUENCE}, {@code LAST-MODIFIED}
+ * and {@code DTSTAMP} are the same, which is how calendar servers signal changes. Events declaring none of them, events
+ * without UID and events whose key is not unique are always considered changed.
+ *
+ * @version $Id$
+ * @since 2.5.5
+ */
+public class EventDelta
+{
+    private static final int NONE = -1;
+
+    private static final List<String> VERSION_PROPERTIES =
+        List.of(Property.SEQUENCE, Property.LAST_MODIFIED, Property.DTSTAMP);
+
+    private final int[] previousPositions;
+
+    private final int unchangedCount;
+
+    private final int removedCount;
+
+    private final Set<String> changedUids;
+
+    /**
+     * @param previousEvents the events of the previous version of the calendar
+     * @param events the events of the new version of the calendar
+     */
+    public EventDelta(List<CalendarComponent> previousEvents, List<CalendarComponent> events)
+    {
+        Map<String, Integer> previousKeys = new HashMap<>();
+        for (int i = 0; i < previousEvents.size(); i++) {
+            String key = getKey(previousEvents.get(i));
+            if (key != null) {
+                // Ambiguous keys cannot be matched.
+                previousKeys.merge(key, i, (position, duplicate) -> NONE);
+            }
+        }
+
+        this.previousPositions = new int[events.size()];
+        Arrays.fill(this.previousPositions, NONE);
+        boolean[] keptPrevious = new boolean[previousEvents.size()];
+        Set<String> uids = new HashSet<>();
+        boolean traceable = true;
+        int unchanged = 0;
+        int matched = 0;
+        for (int i = 0; i < events.size(); i++) {
+            CalendarComponent event = events.get(i);
+            String key = getKey(event);
+            Integer position = key == null ? null : previousKeys.remove(key);
+            if (position != null && position != NONE) {
+                matched++;
+                if (isSameVersion(previousEvents.get(position), event)) {
+                    this.previousPositions[i] = position;
+                    keptPrevious[position] = true;
+                    unchanged++;
+                    continue;
+                }
+            }
+            traceable &= key != null;
+            uids.add(OverrideIndex.getUid(event));
+        }
+        for (int i = 0; i < keptPrevious.length && traceable; i++) {
+            if (!keptPrevious[i]) {
+                String uid = OverrideIndex.getUid(previousEvents.get(i));
+                traceable = !uid.isEmpty();
+                uids.add(uid);
+            }
+        }
+        this.unchangedCount = unchanged;
+        this.removedCount = previousEvents.size() - matched;
+        this.changedUids = traceable ? uids : null;
+    }
+
+    /**
+     * @param position the position of an event in the new version of the calendar
+     * @return the position of the same, unchanged, event in the previous version of the calendar, or {@code -1} if the
+     *     event is new or changed
+     */
+    public int getPreviousPosition(int position)
+    {
+        return this.previousPositions[position];
+    }
+
+    /**
+     * @return the number of events of the new version that did not change
+     */
+    public int getUnchangedCount()
+    {
+        return this.unchangedCount;
+    }
+
+    /**
+     * @return the number of events of the new version that were added or changed
+     */
+    public int getChangedCount()
+    {
+        return this.previousPositions.length - this.unchangedCount;
+    }
+
+    /**
+     * @return the number of events of the previous version that are not in the new version anymore, or that could
+     *     not be matched
+     */
+    public int getRemovedCount()
+    {
+        return this.removedCount;
+    }
+
+    /**
+     * @return the UIDs of the events that were added, changed or removed, or {@code null} if some of these events have
+     *     no UID
+     */
+    public Set<String> getChangedUids()
+    {
+        return this.changedUids;
+    }
+
+    private static String getKey(CalendarComponent event)
+    {
+        String uid = OverrideIndex.getUid(event);
+        if (uid.isEmpty()) {
+            return null;
+        }
+        return uid + '|' + event.getProperty(Property.RECURRENCE_ID).map(Property::getValue).orElse("");
+    }
+
+    private static boolean isSameVersion(CalendarComponent previousEvent, CalendarComponent event)
+    {
+        boolean versioned = false;
+        for (String propertyName : VERSION_PROPERTIES) {
+            String previousValue = previousEvent.getProperty(propertyName).map(Property::getValue).orElse(null);
+            if (!Objects.equals(previousValue, event.getProperty(propertyName).map(Property::getValue).orElse(null))) {
+                return false;
+            }
+            versioned |= previousValue != null;
+        }
+        return versioned;
+    }
+}
@@ -0,0 +1,254 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.fullcalendar.internal.util;
+
+import java.time.ZoneId;
+import java.time.temporal.Temporal;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Date;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.IntStream;
+
+import net.fortuna.ical4j.model.Property;
+import net.fortuna.ical4j.model.component.CalendarComponent;
+import net.fortuna.ical4j.model.component.VEvent;
+import net.fortuna.ical4j.model.property.DtEnd;
+import net.fortuna.ical4j.model.property.DtStart;
+import net.fortuna.ical4j.model.property.RRule;
+
+/**
+ * Immutable index of the events of a calendar by the time span they cover, used to find the events that can occur
+ * in an interval without going through the whole calendar. Single events are indexed by their start and end, and
+ * recurring events by the span of their recurrence. Modified instances of recurring events are always returned,
+ * since they are matched with their recurring event later on.
+ * <p>
+ * The spans are kept in arrays sorted by start, augmented with the maximum end of each implicit subtree, so a query
+ * only visits the subtrees that can contain matching spans.
+ *
+ * @version $Id$
+ * @since 2.5.5
+ */
+public class EventIntervalIndex
+{
+    private static final long DEFAULT_DURATION = TimeUnit.DAYS.toMillis(1);
+
+    private final List<CalendarComponent> events;
+
+    private final long[] starts;
+
+    private final long[] ends;
+
+    private final int[] positions;
+
+    /**
+     * The maximum end of the spans in the implicit subtree rooted at each index.
+     */
+    private final long[] maxEnds;
+
+    private final int[] alwaysIncluded;
+
+    /**
+     * The index in the span arrays of the event at each position, {@code -1} for the events without span.
+     */
+    private final int[] spanIndexes;
+
+    private final ZoneId zoneId;
+
+    /**
+     * Index the given events.
+     *
+     * @param events the events to index
+     * @param zoneId the time zone of the calendar, used for the floating dates
+     * @param dateProcessor used to convert the event dates
+     */
+    public EventIntervalIndex(List<CalendarComponent> events, ZoneId zoneId, DateProcessor dateProcessor)
+    {
+        this(events, zoneId, dateProcessor, null, null);
+    }
+
+    /**
+     * Index a new version of the events of a calendar, reusing the spans of the events that did not change since the
+     * previous version, so that only the changed events are indexed again.
+     *
+     * @param events the events to index
+     * @param zoneId the time zone of the calendar, used for the floating dates
+     * @param dateProcessor used to convert the event dates
+     * @param previousIndex the index of the previous version of the calendar, {@code null} to index all the events
+     * @param delta the differences between the events of the previous index and the given events, {@code null} to
+     *     index all the events
+     */
+    public EventIntervalIndex(List<CalendarComponent> events, ZoneId zoneId, DateProcessor dateProcessor,
+        EventIntervalIndex previousIndex, EventDelta delta)
+    {
+        this.events = events;
+        this.zoneId = zoneId;
+        boolean reuse = previousIndex != null && delta != null && zoneId.equals(previousIndex.zoneId);
+
+        List<long[]> spans = new ArrayList<>(events.size());
+        List<Integer> always = new ArrayList<>();
+        for (int i = 0; i < events.size(); i++) {
+            VEvent event = (VEvent) events.get(i);
+            if (event.getProperty(Property.RECURRENCE_ID).isPresent()) {
+                always.add(i);
+            } else {
+                int previousPosition = reuse ? delta.getPreviousPosition(i) : -1;
+                long[] span = previousPosition >= 0 ? previousIndex.getSpan(previousPosition)
+                    : getSpan(event, zoneId, dateProcessor);
+                if (span != null) {
+                    spans.add(new long[] { span[0], span[1], i });
+                }
+            }
+        }
+        spans.sort(Comparator.comparingLong(span -> span[0]));
+
+        int size = spans.size();
+        this.starts = new long[size];
+        this.ends = new long[size];
+        this.positions = new int[size];
+        this.spanIndexes = new int[events.size()];
+        Arrays.fill(this.spanIndexes, -1);
+        for (int i = 0; i < size; i++) {
+            long[] span = spans.get(i);
+            this.starts[i] = span[0];
+            this.ends[i] = span[1];
+            this.positions[i] = (int) span[2];
+            this.spanIndexes[this.positions[i]] = i;
+        }
+        this.maxEnds = new long[size];
+        computeMaxEnds(0, size);
+        this.alwaysIncluded = always.stream().mapToInt(Integer::intValue).toArray();
+    }
+
+    /**
+     * Get the events that can occur in the given interval, in the order of the indexed list. The result is a superset
+     * of the events actually occurring in the interval: the precise checks are left to the event processing.
+     *
+     * @param intervalStart the start of the interval, in milliseconds since the epoch
+     * @param intervalEnd the end of the interval, in milliseconds since the epoch
+     * @return the events that can occur in the interval
+     */
+    public List<CalendarComponent> getEvents(long intervalStart, long intervalEnd)
+    {
+        List<Integer> matches = new ArrayList<>();
+        collect(0, this.starts.length, intervalStart, intervalEnd, matches);
+        int[] sortedPositions = IntStream.concat(matches.stream().mapToInt(Integer::intValue),
+            Arrays.stream(this.alwaysIncluded)).sorted().toArray();
+
+        List<CalendarComponent> result = new ArrayList<>(sortedPositions.length);
+        for (int position : sortedPositions) {
+            result.add(this.events.get(position));
+        }
+        return result;
+    }
+
+    /**
+     * @return the number of indexed events
+     */
+    public int size()
+    {
+        return this.events.size();
+    }
+
+    /**
+     * @return the indexed events, in their original order
+     */
+    public List<CalendarComponent> getEvents()
+    {
+        return this.events;
+    }
+
+    /**
+     * @return the start and end of the span of the event at the given position, or {@code null} if it has none
+     */
+    private long[] getSpan(int position)
+    {
+        int spanIndex = this.spanIndexes[position];
+        return spanIndex < 0 ? null : new long[] { this.starts[spanIndex], this.ends[spanIndex] };
+    }
+
+    private long computeMaxEnds(int low, int high)
+    {
+        if (low >= high) {
+            return Long.MIN_VALUE;
+        }
+        int middle = (low + high) >>> 1;
+        long maxEnd = Math.max(this.ends[middle],
+            Math.max(computeMaxEnds(low, middle), computeMaxEnds(middle + 1, high)));
+        this.maxEnds[middle] = maxEnd;
+        return maxEnd;
+    }
+
+    private void collect(int low, int high, long intervalStart, long intervalEnd, List<Integer> matches)
+    {
+        if (low >= high) {
+            return;
+        }
+        int middle = (low + high) >>> 1;
+        // Skip the subtrees where all the spans end before the interval, or start after it.
+        if (this.maxEnds[middle] < intervalStart || this.starts[low] > intervalEnd) {
+            return;
+        }
+        collect(low, middle, intervalStart, intervalEnd, matches);
+        if (this.starts[middle] <= intervalEnd && this.ends[middle] >= intervalStart) {
+            matches.add(this.positions[middle]);
+        }
+        collect(middle + 1, high, intervalStart, intervalEnd, matches);
+    }
+
+    /**
+     * @return the start and end of the time span covered by the event, or {@code null} if the event has no start
+     */
+    private long[] getSpan(VEvent event, ZoneId zoneId, DateProcessor dateProcessor)
+    {
+        DtStart<?> dtStart = event.getDateTimeStart();
+        if (dtStart == null) {
+            return null;
+        }
+        Date start = dateProcessor.toUtilDate(dtStart.getDate(), zoneId);
+        if (start == null) {
+            return null;
+        }
+        long duration = DEFAULT_DURATION;
+        DtEnd<?> dtEnd = event.getDateTimeEnd();
+        Date end = dtEnd == null ? null : dateProcessor.toUtilDate(dtEnd.getDate(), zoneId);
+        if (end != null) {
+            duration = Math.max(0, end.getTime() - start.getTime());
+        }
+
+        if (event.getProperty(Property.RDATE).isPresent()) {
+            return new long[] { start.getTime(), Long.MAX_VALUE };
+        }
+        Optional<Property> rRuleOptional = event.getProperty(Property.RRULE);
+        if (rRuleOptional.isPresent()) {
+            RRule<Temporal> rRule = (RRule) rRuleOptional.get();
+            Temporal until = rRule.getRecur() == null ? null : rRule.getRecur().getUntil();
+            Date untilDate = until == null ? null : dateProcessor.toUtilDate(until, zoneId);
+            // Recurrences limited by a number of occurrences are considered unbounded, computing their actual end
+            // would require expanding them.
+            long spanEnd = untilDate == null ? Long.MAX_VALUE : untilDate.getTime() + duration;
+            return new long[] { start.getTime(), spanEnd };
+        }
+        return new long[] { start.getTime(), start.getTime() + duration };
+    }
+}
@@ -0,0 +1,194 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.fullcalendar.internal.util;
+
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.Collections;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.xwiki.fullcalendar.model.CalendarEvent;
+
+/**
+ * The state of the processing of the events of a calendar for a request. The event processors are shared singletons,
+ * so everything that depends on the request is passed to them through this object.
+ *
+ * @version $Id$
+ * @since 2.5.5
+ */
+public class EventProcessingContext
+{
+    private final ZoneId zoneId;
+
+    private final LocalDateTime intervalStart;
+
+    private final LocalDateTime intervalEnd;
+
+    private final boolean collapse;
+
+    private final ExpansionBudget budget;
+
+    private final RecurrenceExpansionCache expansionCache;
+
+    private final Map<String, Set<Long>> overriddenStarts;
+
+    private final StringInterner stringInterner;
+
+    /**
+     * The events added in collapse mode, by id, so that the modified instances find their recurring event without
+     * searching the events list. The events may be processed in parallel.
+     */
+    private final Map<String, CalendarEvent> collapsedEvents = new ConcurrentHashMap<>();
+
+    /**
+     * @param zoneId the time zone of the calendar
+     * @param intervalStart the start of the requested interval, {@code null} for no limit
+     * @param intervalEnd the end of the requested interval, {@code null} for no limit
+     * @param collapse expands the recurring events if {@code false}, or collapses them into the parent otherwise
+     * @param budget the limits on the number of generated instances
+     * @param expansionCache the cache of the expanded occurrences of the calendar, {@code null} for no cache
+     */
+    public EventProcessingContext(ZoneId zoneId, LocalDateTime intervalStart, LocalDateTime intervalEnd,
+        boolean collapse, ExpansionBudget budget, RecurrenceExpansionCache expansionCache)
+    {
+        this(zoneId, intervalStart, intervalEnd, collapse, budget, expansionCache, Collections.emptyMap(), null);
+    }
+
+    /**
+     * @param zoneId the time zone of the calendar
+     * @param intervalStart the start of the requested interval, {@code null} for no limit
+     * @param intervalEnd the end of the requested interval, {@code null} for no limit
+     * @param collapse expands the recurring events if {@code false}, or collapses them into the parent otherwise
+     * @param budget the limits on the number of generated instances
+     * @param expansionCache the cache of the expanded occurrences of the calendar, {@code null} for no cache
+     * @param overriddenStarts the original start dates of the modified instances, in milliseconds since the epoch, by
+     *     UID of their recurring event, see {@link OverrideIndex#getOverriddenStarts}
+     * @param stringInterner the table of the values shared by the events of the calendar, {@code null} to not share
+     *     them
+     */
+    public EventProcessingContext(ZoneId zoneId, LocalDateTime intervalStart, LocalDateTime intervalEnd,
+        boolean collapse, ExpansionBudget budget, RecurrenceExpansionCache expansionCache,
+        Map<String, Set<Long>> overriddenStarts, StringInterner stringInterner)
+    {
+        this.zoneId = zoneId;
+        this.intervalStart = intervalStart;
+        this.intervalEnd = intervalEnd;
+        this.collapse = collapse;
+        this.budget = budget;
+        this.expansionCache = expansionCache;
+        this.overriddenStarts = overriddenStarts;
+        this.stringInterner = stringInterner;
+    }
+
+    /**
+     * @return the time zone of the calendar
+     */
+    public ZoneId getZoneId()
+    {
+        return this.zoneId;
+    }
+
+    /**
+     * @return the start of the requested interval, {@code null} for no limit
+     */
+    public LocalDateTime getIntervalStart()
+    {
+        return this.intervalStart;
+    }
+
+    /**
+     * @return the end of the requested interval, {@code null} for no limit
+     */
+    public LocalDateTime getIntervalEnd()
+    {
+        return this.intervalEnd;
+    }
+
+    /**
+     * @return {@code true} if the interval is limited on both sides
+     */
+    public boolean hasInterval()
+    {
+        return this.intervalStart != null && this.intervalEnd != null;
+    }
+
+    /**
+     * @return {@code false} if the recurring events are expanded, {@code true} if they are collapsed into the parent
+     */
+    public boolean isCollapse()
+    {
+        return this.collapse;
+    }
+
+    /**
+     * @return the limits on the number of generated instances
+     */
+    public ExpansionBudget getBudget()
+    {
+        return this.budget;
+    }
+
+    /**
+     * @return the cache of the expanded occurrences of the calendar, or {@code null} if they are not cached
+     */
+    public RecurrenceExpansionCache getExpansionCache()
+    {
+        return this.expansionCache;
+    }
+
+    /**
+     * @param uid the UID of a recurring event
+     * @return the original start dates of the modified instances of the recurring event, in milliseconds since the
+     *     epoch, which must not be generated again when expanding it
+     */
+    public Set<Long> getOverriddenStarts(String uid)
+    {
+        return this.overriddenStarts.getOrDefault(uid, Collections.emptySet());
+    }
+
+    /**
+     * Remember an event added in collapse mode, unless an event with the same id was added before.
+     *
+     * @param event the added event
+     */
+    public void addCollapsedEvent(CalendarEvent event)
+    {
+        this.collapsedEvents.putIfAbsent(event.getId(), event);
+    }
+
+    /**
+     * @param id the id of an event, i.e. its UID
+     * @return the event with the given id added in collapse mode, or {@code null} if there is none
+     */
+    public CalendarEvent getCollapsedEvent(String id)
+    {
+        return this.collapsedEvents.get(id);
+    }
+
+    /**
+     * @return the table of the values shared by the events of the calendar, or {@code null} if they are not shared
+     */
+    public StringInterner getStringInterner()
+    {
+        return this.stringInterner;
+    }
+}
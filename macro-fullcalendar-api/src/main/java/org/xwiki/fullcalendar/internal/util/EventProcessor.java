@@ -91,13 +91,33 @@ public class EventProcessor
      * @param event the source event
      */
     public void addBasicEventProperties(CalendarEvent jsonMap, VEvent event)
+    {
+        addBasicEventProperties(jsonMap, event, null);
+    }
+
+    /**
+     * Set the needed properties of a {@link CalendarEvent} from a {@link VEvent}, sharing the values that repeat
+     * across events.
+     *
+     * @param jsonMap the target event
+     * @param event the source event
+     * @param stringInterner the table of the shared values, {@code null} to not share them
+     * @since 2.5.5
+     */
+    public void addBasicEventProperties(CalendarEvent jsonMap, VEvent event, StringInterner stringInterner)
     {
         jsonMap.setId(event.getUid().isPresent() ? event.getUid().get().getValue() : "");
         jsonMap.setTitle(event.getSummary() == null ? "" : event.getSummary().getValue());
 
         // Non-standard fields in each Event Object. FullCalendar will not modify or delete these fields.
         jsonMap.setDescription(event.getDescription() == null ? "" : event.getDescription().getValue());
-        jsonMap.setLocation(event.getLocation() == null ? "" : event.getLocation().getValue());
-        jsonMap.setStatus(event.getStatus() == null ? "" : event.getStatus().getValue());
+        String location = event.getLocation() == null ? "" : event.getLocation().getValue();
+        String status = event.getStatus() == null ? "" : event.getStatus().getValue();
+        if (stringInterner != null) {
+            location = stringInterner.intern(location);
+            status = stringInterner.intern(status);
+        }
+        jsonMap.setLocation(location);
+        jsonMap.setStatus(status);
     }
 }
@@ -0,0 +1,94 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.fullcalendar.internal.util;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Limits the number of recurring event instances generated while processing a request, per recurring event and for
+ * the whole request.
+ *
+ * @version $Id$
+ * @since 2.5.5
+ */
+public class ExpansionBudget
+{
+    private final int maxInstancesPerEvent;
+
+    private final AtomicInteger remainingInstances;
+
+    private volatile boolean exhausted;
+
+    /**
+     * @param maxInstancesPerEvent the maximum number of instances generated for a recurring event
+     * @param maxInstancesPerRequest the maximum number of instances generated for the whole request
+     */
+    public ExpansionBudget(int maxInstancesPerEvent, int maxInstancesPerRequest)
+    {
+        this.maxInstancesPerEvent = maxInstancesPerEvent;
+        this.remainingInstances = new AtomicInteger(maxInstancesPerRequest);
+    }
+
+    /**
+     * @return a budget without limits
+     */
+    public static ExpansionBudget unlimited()
+    {
+        return new ExpansionBudget(Integer.MAX_VALUE, Integer.MAX_VALUE);
+    }
+
+    /**
+     * @return the maximum number of instances generated for a recurring event
+     */
+    public int getMaxInstancesPerEvent()
+    {
+        return this.maxInstancesPerEvent;
+    }
+
+    /**
+     * Account for a new instance.
+     *
+     * @return {@code true} if the instance can be generated, {@code false} if the request limit is reached
+     */
+    public boolean tryConsume()
+    {
+        if (this.remainingInstances.getAndUpdate(remaining -> Math.max(0, remaining - 1)) > 0) {
+            return true;
+        }
+        this.exhausted = true;
+        return false;
+    }
+
+    /**
+     * Record that an event produced more instances than allowed for a single event.
+     */
+    public void markExhausted()
+    {
+        this.exhausted = true;
+    }
+
+    /**
+     * @return {@code true} if some instances were dropped because of the limits
+     */
+    public boolean isExhausted()
+    {
+        return this.exhausted;
+    }
+}
@@ -0,0 +1,275 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.fullcalendar.internal.util;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.ZonedDateTime;
+import java.time.temporal.ChronoUnit;
+import java.time.temporal.Temporal;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.Deque;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Set;
+import java.util.function.ToLongFunction;
+
+import net.fortuna.ical4j.model.Recur;
+
+/**
+ * Iterates lazily over the occurrences of a recurrence rule in an interval, in chronological order. The rule is
+ * expanded one chunk of the interval at a time, so at most a chunk of occurrences is held in memory and the expansion
+ * stops as soon as the caller stops iterating or the maximum number of occurrences is reached. The dates excluded by
+ * {@code EXDATE} are skipped and the additional {@code RDATE} dates of the interval are merged in. Unless the rule
+ * has a {@code COUNT}, which is counted from the start of the recurrence, each chunk is expanded from the last
+ * occurrence found so far instead of the start of the recurrence, so that the rule is not walked again from its start
+ * for every chunk. In a time zone, the occurrences falling in a daylight saving gap are shifted, so the next chunks
+ * are expanded from the day of the last occurrence at the time of the start of the recurrence instead.
+ *
+ * @version $Id$
+ * @since 2.5.5
+ */
+public class OccurrenceIterator implements Iterator<Temporal>
+{
+    private static final long SHORT_CHUNK_DAYS = 1;
+
+    private static final long MEDIUM_CHUNK_DAYS = 7;
+
+    private static final long DAILY_CHUNK_DAYS = 31;
+
+    private static final long LONG_CHUNK_DAYS = 366;
+
+    private final Recur<Temporal> recur;
+
+    private final Temporal start;
+
+    private final boolean counted;
+
+    private final LocalDateTime intervalEnd;
+
+    private final long chunkDays;
+
+    private final Set<Long> excludedDates = new HashSet<>();
+
+    private final List<Temporal> additionalDates = new ArrayList<>();
+
+    private final int maxCount;
+
+    private final ToLongFunction<Temporal> toEpochMillis;
+
+    private final Deque<Temporal> ruleDates = new ArrayDeque<>();
+
+    private Temporal seed;
+
+    private LocalDateTime chunkStart;
+
+    private boolean ruleExhausted;
+
+    private int additionalDateIndex;
+
+    private long lastEpochMillis = Long.MIN_VALUE;
+
+    private int count;
+
+    private Temporal next;
+
+    private boolean truncated;
+
+    /**
+     * @param recur the recurrence rule
+     * @param seed the start date of the recurrence
+     * @param intervalStart the start of the interval
+     * @param intervalEnd the end of the interval
+     * @param exDates the dates excluded from the recurrence
+     * @param rDates the dates added to the recurrence
+     * @param maxCount the maximum number of occurrences to return
+     * @param toEpochMillis converts the dates to milliseconds since the epoch, to compare them
+     */
+    public OccurrenceIterator(Recur<Temporal> recur, Temporal seed, LocalDateTime intervalStart,
+        LocalDateTime intervalEnd, Collection<Temporal> exDates, Collection<Temporal> rDates, int maxCount,
+        ToLongFunction<Temporal> toEpochMillis)
+    {
+        this.recur = recur;
+        this.start = seed;
+        this.seed = seed;
+        this.counted = recur.getCount() != -1;
+        this.chunkStart = intervalStart;
+        this.intervalEnd = intervalEnd;
+        this.chunkDays = getChunkDays(recur);
+        this.maxCount = maxCount;
+        this.toEpochMillis = toEpochMillis;
+        for (Temporal exDate : exDates) {
+            this.excludedDates.add(toEpochMillis.applyAsLong(exDate));
+        }
+        long start = toEpochMillis.applyAsLong(intervalStart);
+        long end = toEpochMillis.applyAsLong(intervalEnd);
+        for (Temporal rDate : rDates) {
+            long epochMillis = toEpochMillis.applyAsLong(rDate);
+            if (epochMillis >= start && epochMillis <= end) {
+                this.additionalDates.add(rDate);
+            }
+        }
+        this.additionalDates.sort(Comparator.comparingLong(toEpochMillis));
+    }
+
+    @Override
+    public boolean hasNext()
+    {
+        if (this.next == null) {
+            this.next = computeNext();
+        }
+        return this.next != null;
+    }
+
+    @Override
+    public Temporal next()
+    {
+        if (!hasNext()) {
+            throw new NoSuchElementException();
+        }
+        Temporal result = this.next;
+        this.next = null;
+        return result;
+    }
+
+    /**
+     * @return {@code true} if the iteration stopped because the maximum number of occurrences was reached
+     */
+    public boolean isTruncated()
+    {
+        return this.truncated;
+    }
+
+    private Temporal computeNext()
+    {
+        while (true) {
+            Temporal candidate = pollEarliest();
+            if (candidate == null) {
+                return null;
+            }
+            long epochMillis = this.toEpochMillis.applyAsLong(candidate);
+            // Skip the dates returned twice, at the boundary of two chunks or both by the rule and by RDATE.
+            if (epochMillis <= this.lastEpochMillis) {
+                continue;
+            }
+            this.lastEpochMillis = epochMillis;
+            if (!this.excludedDates.contains(epochMillis)) {
+                if (this.count >= this.maxCount) {
+                    this.truncated = true;
+                    return null;
+                }
+                this.count++;
+                return candidate;
+            }
+        }
+    }
+
+    private Temporal pollEarliest()
+    {
+        Temporal ruleDate = peekRuleDate();
+        Temporal additionalDate = this.additionalDateIndex < this.additionalDates.size()
+            ? this.additionalDates.get(this.additionalDateIndex) : null;
+        if (additionalDate != null && (ruleDate == null
+            || this.toEpochMillis.applyAsLong(additionalDate) < this.toEpochMillis.applyAsLong(ruleDate)))
+        {
+            this.additionalDateIndex++;
+            return additionalDate;
+        }
+        return this.ruleDates.poll();
+    }
+
+    private Temporal peekRuleDate()
+    {
+        while (this.ruleDates.isEmpty() && !this.ruleExhausted) {
+            LocalDateTime chunkEnd = this.chunkStart.plus(this.chunkDays, ChronoUnit.DAYS);
+            boolean lastChunk = !chunkEnd.isBefore(this.intervalEnd);
+            if (lastChunk) {
+                chunkEnd = this.intervalEnd;
+            }
+            // Ask for one more date than allowed, to know if the limit was reached.
+            int chunkMaxCount = Math.max(1, this.maxCount - this.count + 1);
+            List<Temporal> chunkDates = this.recur.getDates(this.seed, this.chunkStart, chunkEnd, chunkMaxCount);
+            this.ruleDates.addAll(chunkDates);
+            if (!this.counted && !chunkDates.isEmpty()) {
+                // An occurrence is aligned on the periods of the rule, so the next chunks can be expanded from it. If
+                // it is returned again, it is skipped as a duplicate.
+                this.seed = getNextSeed(chunkDates.get(chunkDates.size() - 1));
+            }
+            if (chunkDates.size() >= chunkMaxCount) {
+                // The chunk was cut short, and some of its dates may still be excluded: expand the rest of it next.
+                this.chunkStart = toLocalDateTime(chunkDates.get(chunkDates.size() - 1)).plusSeconds(1);
+            } else {
+                this.chunkStart = chunkEnd;
+                this.ruleExhausted = lastChunk;
+            }
+        }
+        return this.ruleDates.peek();
+    }
+
+    /**
+     * @return the seed to expand the next chunks from, given the last occurrence found so far
+     */
+    private Temporal getNextSeed(Temporal lastDate)
+    {
+        if (lastDate instanceof LocalDate || lastDate instanceof LocalDateTime) {
+            // Without time zone, an occurrence has the date fields the rule takes from its start.
+            return lastDate;
+        } else if (lastDate instanceof ZonedDateTime && this.start instanceof ZonedDateTime
+            && this.chunkDays >= DAILY_CHUNK_DAYS)
+        {
+            // The occurrence may have been shifted by a daylight saving gap, so keep the time of the start. The periods
+            // of the rule are at least a day long, so the day of the occurrence is aligned on them.
+            ZonedDateTime zonedStart = (ZonedDateTime) this.start;
+            ZonedDateTime nextSeed = ZonedDateTime.of(
+                ((ZonedDateTime) lastDate).withZoneSameInstant(zonedStart.getZone()).toLocalDate(),
+                zonedStart.toLocalTime(), zonedStart.getZone());
+            if (nextSeed.toLocalTime().equals(zonedStart.toLocalTime())) {
+                return nextSeed;
+            }
+        }
+        // The time of the start doesn't exist on the day of the occurrence, or the seed can't be rebuilt safely.
+        return this.seed;
+    }
+
+    private static LocalDateTime toLocalDateTime(Temporal date)
+    {
+        return date instanceof LocalDate ? ((LocalDate) date).atStartOfDay() : LocalDateTime.from(date);
+    }
+
+    private static long getChunkDays(Recur<Temporal> recur)
+    {
+        switch (recur.getFrequency()) {
+            case SECONDLY:
+            case MINUTELY:
+                return SHORT_CHUNK_DAYS;
+            case HOURLY:
+                return MEDIUM_CHUNK_DAYS;
+            case DAILY:
+                return DAILY_CHUNK_DAYS;
+            default:
+                return LONG_CHUNK_DAYS;
+        }
+    }
+}
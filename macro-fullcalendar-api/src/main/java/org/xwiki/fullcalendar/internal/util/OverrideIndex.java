@@ -0,0 +1,134 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.fullcalendar.internal.util;
+
+import java.time.ZoneId;
+import java.time.temporal.Temporal;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import net.fortuna.ical4j.model.Property;
+import net.fortuna.ical4j.model.component.CalendarComponent;
+import net.fortuna.ical4j.model.property.RecurrenceId;
+
+/**
+ * Groups the modified instances of the recurring events of a calendar by UID, in a single pass over the events, so
+ * that they can be matched with their recurring event without searching the whole calendar.
+ *
+ * @version $Id$
+ * @since 2.5.5
+ */
+public class OverrideIndex
+{
+    private final List<CalendarComponent> events;
+
+    private final List<CalendarComponent> primaryEvents;
+
+    private final Map<String, List<CalendarComponent>> overrides = new LinkedHashMap<>();
+
+    /**
+     * @param events the events of the calendar
+     */
+    public OverrideIndex(List<CalendarComponent> events)
+    {
+        this.events = events;
+        List<CalendarComponent> otherEvents = new ArrayList<>(events.size());
+        for (CalendarComponent event : events) {
+            if (isOverride(event)) {
+                this.overrides.computeIfAbsent(getUid(event), uid -> new ArrayList<>()).add(event);
+            } else {
+                otherEvents.add(event);
+            }
+        }
+        this.primaryEvents = this.overrides.isEmpty() ? events : otherEvents;
+    }
+
+    /**
+     * @param event an event
+     * @return {@code true} if the event is a modified instance of a recurring event
+     */
+    public static boolean isOverride(CalendarComponent event)
+    {
+        return event.getProperty(Property.RECURRENCE_ID).isPresent() && event.getProperty(Property.RRULE).isEmpty();
+    }
+
+    /**
+     * @param event an event
+     * @return the UID of the event, or an empty string if it has none
+     */
+    public static String getUid(CalendarComponent event)
+    {
+        return event.getProperty(Property.UID).map(Property::getValue).orElse("");
+    }
+
+    /**
+     * @return all the events, in their original order
+     */
+    public List<CalendarComponent> getEvents()
+    {
+        return this.events;
+    }
+
+    /**
+     * @return the events that are not modified instances, in their original order
+     */
+    public List<CalendarComponent> getPrimaryEvents()
+    {
+        return this.primaryEvents;
+    }
+
+    /**
+     * @return the modified instances, grouped by the UID of their recurring event, in their original order
+     */
+    public Map<String, List<CalendarComponent>> getOverrides()
+    {
+        return Collections.unmodifiableMap(this.overrides);
+    }
+
+    /**
+     * @param zoneId the time zone of the calendar
+     * @param dateProcessor used to convert the dates
+     * @return the original start dates of the modified instances, in milliseconds since the epoch, by UID of their
+     *     recurring event
+     */
+    public Map<String, Set<Long>> getOverriddenStarts(ZoneId zoneId, DateProcessor dateProcessor)
+    {
+        Map<String, Set<Long>> overriddenStarts = new HashMap<>();
+        this.overrides.forEach((uid, uidOverrides) -> {
+            Set<Long> starts = new HashSet<>();
+            for (CalendarComponent override : uidOverrides) {
+                RecurrenceId<Temporal> recurrenceId = (RecurrenceId) override.getProperty(Property.RECURRENCE_ID).get();
+                Date start = dateProcessor.toUtilDate(recurrenceId.getDate(), zoneId);
+                if (start != null) {
+                    starts.add(start.getTime());
+                }
+            }
+            overriddenStarts.put(uid, starts);
+        });
+        return overriddenStarts;
+    }
+}
@@ -0,0 +1,132 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.fullcalendar.internal.util;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinWorkerThread;
+import java.util.function.BiConsumer;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import javax.inject.Inject;
+import javax.inject.Singleton;
+
+import org.xwiki.component.annotation.Component;
+import org.xwiki.component.phase.Disposable;
+import org.xwiki.component.phase.Initializable;
+import org.xwiki.fullcalendar.internal.FullCalendarConfiguration;
+
+import net.fortuna.ical4j.model.component.CalendarComponent;
+
+/**
+ * Processes the events of large calendars on a dedicated fork/join pool, split in chunks of consecutive events. The
+ * results are merged in the order of the events, so the output does not depend on the number of threads.
+ *
+ * @version $Id$
+ * @since 2.5.5
+ */
+@Component(roles = ParallelEventProcessor.class)
+@Singleton
+public class ParallelEventProcessor implements Initializable, Disposable
+{
+    private static final String THREAD_NAME_FORMAT = "FullCalendar event processing %d";
+
+    /**
+     * The number of chunks created per thread, so that the threads that are done early can steal some work.
+     */
+    private static final int CHUNKS_PER_THREAD = 4;
+
+    private ForkJoinPool pool;
+
+    @Inject
+    private FullCalendarConfiguration configuration;
+
+    @Override
+    public void initialize()
+    {
+        this.pool = new ForkJoinPool(this.configuration.getParallelThreads(), pool -> {
+            ForkJoinWorkerThread thread = ForkJoinPool.defaultForkJoinWorkerThreadFactory.newThread(pool);
+            thread.setName(String.format(THREAD_NAME_FORMAT, thread.getPoolIndex()));
+            return thread;
+        }, null, false);
+    }
+
+    @Override
+    public void dispose()
+    {
+        this.pool.shutdownNow();
+    }
+
+    /**
+     * @param eventCount the number of events to process
+     * @return {@code true} if the events should be processed in parallel
+     */
+    public boolean isParallel(int eventCount)
+    {
+        int minEvents = this.configuration.getParallelMinEvents();
+        return minEvents > 0 && eventCount >= minEvents && this.pool.getParallelism() > 1;
+    }
+
+    /**
+     * @return the number of events to process at once to keep all the threads busy
+     */
+    public int getBatchSize()
+    {
+        return this.configuration.getParallelMinEvents() * this.pool.getParallelism();
+    }
+
+    /**
+     * Process the given events in parallel.
+     *
+     * @param <T> the type of the results
+     * @param events the events to process
+     * @param processor adds the results of an event to the given list; it must be thread safe
+     * @return the results of all the events, in the order of the events
+     */
+    public <T> List<T> process(List<CalendarComponent> events, BiConsumer<CalendarComponent, List<T>> processor)
+    {
+        int chunkCount = Math.min(events.size(), this.pool.getParallelism() * CHUNKS_PER_THREAD);
+        if (chunkCount == 0) {
+            return new ArrayList<>();
+        }
+        Callable<List<List<T>>> task = () -> IntStream.range(0, chunkCount).parallel()
+            .mapToObj(chunk -> processChunk(events, chunk, chunkCount, processor)).collect(Collectors.toList());
+        List<List<T>> chunkResults = this.pool.submit(task).join();
+
+        List<T> results = new ArrayList<>(chunkResults.stream().mapToInt(List::size).sum());
+        chunkResults.forEach(results::addAll);
+        return results;
+    }
+
+    private <T> List<T> processChunk(List<CalendarComponent> events, int chunk, int chunkCount,
+        BiConsumer<CalendarComponent, List<T>> processor)
+    {
+        int from = (int) ((long) events.size() * chunk / chunkCount);
+        int to = (int) ((long) events.size() * (chunk + 1) / chunkCount);
+        List<T> results = new ArrayList<>();
+        for (CalendarComponent event : events.subList(from, to)) {
+            processor.accept(event, results);
+        }
+        return results;
+    }
+}
@@ -0,0 +1,170 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.fullcalendar.internal.util;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Least recently used cache of the expanded occurrences of recurring events, so that the same recurrences requested
+ * over the same interval by different users are expanded only once. Each feed has its own cache, kept across the
+ * versions of the feed: the keys include the properties the occurrences are computed from, so the occurrences of the
+ * events that did not change are reused, while those of the changed events are not looked up anymore and get evicted.
+ * This class is thread safe.
+ *
+ * @version $Id$
+ * @since 2.5.5
+ */
+public class RecurrenceExpansionCache
+{
+    /**
+     * Estimated memory used by an entry, besides its occurrences.
+     */
+    private static final long ENTRY_BYTES = 256;
+
+    /**
+     * Memory used by the start and end of an occurrence.
+     */
+    private static final long OCCURRENCE_BYTES = 2L * Long.BYTES;
+
+    private final SizeBoundedLruMap<Occurrences> entries =
+        new SizeBoundedLruMap<>(occurrences -> ENTRY_BYTES + OCCURRENCE_BYTES * occurrences.size());
+
+    private final long maxBytes;
+
+    private final LongAdder hits = new LongAdder();
+
+    private final LongAdder misses = new LongAdder();
+
+    /**
+     * The expanded occurrences of a recurring event in an interval, sorted by start.
+     */
+    public static final class Occurrences
+    {
+        private final long[] starts;
+
+        private final long[] ends;
+
+        /**
+         * @param starts the start of each occurrence, in milliseconds since the epoch
+         * @param ends the end of each occurrence, in milliseconds since the epoch
+         */
+        public Occurrences(long[] starts, long[] ends)
+        {
+            this.starts = starts;
+            this.ends = ends;
+        }
+
+        /**
+         * @return the number of occurrences
+         */
+        public int size()
+        {
+            return this.starts.length;
+        }
+
+        /**
+         * @param index the index of the occurrence
+         * @return the start of the occurrence, in milliseconds since the epoch
+         */
+        public long getStart(int index)
+        {
+            return this.starts[index];
+        }
+
+        /**
+         * @param index the index of the occurrence
+         * @return the end of the occurrence, in milliseconds since the epoch
+         */
+        public long getEnd(int index)
+        {
+            return this.ends[index];
+        }
+
+        /**
+         * @param start a date, in milliseconds since the epoch
+         * @return the index of the first occurrence starting at or after the given date
+         */
+        public int indexOf(long start)
+        {
+            int low = 0;
+            int high = this.starts.length;
+            while (low < high) {
+                int middle = (low + high) >>> 1;
+                if (this.starts[middle] < start) {
+                    low = middle + 1;
+                } else {
+                    high = middle;
+                }
+            }
+            return low;
+        }
+    }
+
+    /**
+     * @param maxBytes the maximum memory used by the cached occurrences
+     */
+    public RecurrenceExpansionCache(long maxBytes)
+    {
+        this.maxBytes = maxBytes;
+    }
+
+    /**
+     * @param key the key identifying the recurrence and the expanded interval
+     * @return the cached occurrences, or {@code null} if there are none
+     */
+    public Occurrences get(String key)
+    {
+        Occurrences occurrences;
+        synchronized (this) {
+            occurrences = this.entries.get(key);
+        }
+        if (occurrences == null) {
+            this.misses.increment();
+        } else {
+            this.hits.increment();
+        }
+        return occurrences;
+    }
+
+    /**
+     * @param key the key identifying the recurrence and the expanded interval
+     * @param occurrences the occurrences to cache
+     */
+    public synchronized void put(String key, Occurrences occurrences)
+    {
+        this.entries.put(key, occurrences, this.maxBytes);
+    }
+
+    /**
+     * @return the number of lookups that found cached occurrences
+     */
+    public long getHitCount()
+    {
+        return this.hits.sum();
+    }
+
+    /**
+     * @return the number of lookups that did not find cached occurrences
+     */
+    public long getMissCount()
+    {
+        return this.misses.sum();
+    }
+}
@@ -24,12 +24,16 @@ import java.time.LocalDateTime;
 import java.time.ZoneId;
 import java.time.temporal.ChronoUnit;
 import java.time.temporal.Temporal;
+import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Date;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
 import java.util.concurrent.TimeUnit;
 
 import javax.inject.Inject;
@@ -37,7 +41,9 @@ import javax.inject.Singleton;
 
 import org.apache.commons.lang3.tuple.Pair;
 import org.xwiki.component.annotation.Component;
+import org.xwiki.fullcalendar.internal.util.RecurrenceExpansionCache.Occurrences;
 import org.xwiki.fullcalendar.model.CalendarEvent;
+import org.xwiki.fullcalendar.model.RecurrenceInstance;
 import org.xwiki.fullcalendar.model.RecurrentEventModification;
 import org.xwiki.stability.Unstable;
 
@@ -46,6 +52,7 @@ import net.fortuna.ical4j.model.Property;
 import net.fortuna.ical4j.model.Recur;
 import net.fortuna.ical4j.model.WeekDay;
 import net.fortuna.ical4j.model.component.VEvent;
+import net.fortuna.ical4j.model.property.DateListProperty;
 import net.fortuna.ical4j.model.property.DtStart;
 import net.fortuna.ical4j.model.property.RRule;
 import net.fortuna.ical4j.model.property.RecurrenceId;
@@ -69,6 +76,12 @@ public class RecurrenceProcessor
 
     private static final long YEARLY_DURATION = TimeUnit.DAYS.toMillis(365);
 
+    /**
+     * The properties that define the occurrences of a recurring event.
+     */
+    private static final List<String> EXPANSION_KEY_PROPERTIES =
+        List.of(Property.UID, Property.DTSTART, Property.RRULE, Property.EXDATE, Property.RDATE);
+
     static {
         WEEK_DAYS.add(WeekDay.MO);
         WEEK_DAYS.add(WeekDay.TU);
@@ -85,8 +98,6 @@ public class RecurrenceProcessor
     @Inject
     private DateProcessor dateProcessor;
 
-    private ZoneId zoneId;
-
     /**
      * Check the recurrence rule of a {@link VEvent}.
      *
@@ -100,71 +111,225 @@ public class RecurrenceProcessor
      */
     public void checkRRule(ZoneId zoneId, LocalDateTime icalIntervalStart, LocalDateTime icalIntervalEnd,
         List<CalendarEvent> jsonArrayList, boolean collapse, VEvent event, CalendarEvent jsonMap)
+    {
+        EventProcessingContext context = new EventProcessingContext(zoneId, icalIntervalStart, icalIntervalEnd,
+            collapse, ExpansionBudget.unlimited(), null);
+        if (collapse && OverrideIndex.isOverride(event)) {
+            // The context isn't shared between the events, so the recurring event can only be found in the list.
+            jsonArrayList.forEach(context::addCollapsedEvent);
+        }
+        checkRRule(context, jsonArrayList, event, jsonMap);
+    }
+
+    /**
+     * Check the recurrence rule of a {@link VEvent}, limiting the number of generated instances and reusing the
+     * occurrences expanded by previous requests when possible.
+     *
+     * @param context the state of the processing of the calendar events
+     * @param jsonArrayList the events list
+     * @param event the event source
+     * @param jsonMap the event target
+     * @since 2.5.5
+     */
+    public void checkRRule(EventProcessingContext context, List<CalendarEvent> jsonArrayList, VEvent event,
+        CalendarEvent jsonMap)
     {
         // Check if there is a RRule.
-        this.zoneId = zoneId;
         Optional<Property> rRuleOptional = event.getProperty(Property.RRULE);
         Optional<Property> recurrenceIdOptional = event.getProperty(Property.RECURRENCE_ID);
         if (rRuleOptional.isPresent()) {
             RRule<Temporal> rRule = (RRule) rRuleOptional.get();
             if (rRule.getRecur() != null) {
-                handleRecurrentEvent(icalIntervalStart, icalIntervalEnd, jsonArrayList, collapse, rRule, event,
-                    jsonMap);
-            }
-        } else if (collapse && recurrenceIdOptional.isPresent()) {
-            RecurrenceId<Temporal> recurrenceId = (RecurrenceId) recurrenceIdOptional.get();
-            addRecurrentModifiedInstance(jsonMap, jsonArrayList, recurrenceId);
-        } else if (maybeAddEvent(icalIntervalStart, icalIntervalEnd, jsonMap, zoneId)) {
-            jsonArrayList.add(jsonMap);
+                handleRecurrentEvent(context, jsonArrayList, rRule, event, jsonMap);
+            }
+        } else if (context.isCollapse() && recurrenceIdOptional.isPresent()) {
+            // The recurring event is looked up by UID, so it has to be processed before its modified instances.
+            CalendarEvent recurringEvent = context.getCollapsedEvent(jsonMap.getId());
+            if (recurringEvent != null) {
+                RecurrenceId<Temporal> recurrenceId = (RecurrenceId) recurrenceIdOptional.get();
+                addRecurrentModifiedInstance(recurringEvent, jsonMap, recurrenceId, context.getZoneId());
+            }
+        } else if (maybeAddEvent(context, jsonMap)) {
+            addEvent(context, jsonArrayList, jsonMap);
         }
     }
 
-    private boolean maybeAddEvent(LocalDateTime icalIntervalStart, LocalDateTime icalIntervalEnd, CalendarEvent jsonMap,
-        ZoneId zoneId)
+    private void addEvent(EventProcessingContext context, List<CalendarEvent> jsonArrayList, CalendarEvent jsonMap)
     {
-        LocalDateTime eventStartTime = jsonMap.getStart().toInstant().atZone(zoneId).toLocalDateTime();
-        LocalDateTime eventEndTime = jsonMap.getEnd().toInstant().atZone(zoneId).toLocalDateTime();
-        return icalIntervalStart == null || icalIntervalEnd == null || dateProcessor.areIntervalsIntersected(
-            Pair.of(eventStartTime, eventEndTime), Pair.of(icalIntervalStart, icalIntervalEnd));
+        jsonArrayList.add(jsonMap);
+        if (context.isCollapse()) {
+            context.addCollapsedEvent(jsonMap);
+        }
     }
 
-    private void handleRecurrentEvent(LocalDateTime icalIntervalStart, LocalDateTime icalIntervalEnd,
-        List<CalendarEvent> jsonArrayList, boolean collapse, RRule<Temporal> rRule, VEvent event, CalendarEvent jsonMap)
+    private boolean maybeAddEvent(EventProcessingContext context, CalendarEvent jsonMap)
     {
-        if (collapse) {
-            boolean areIntervalDatesEmpty = icalIntervalStart == null || icalIntervalEnd == null;
-            Recur<Temporal> recur = rRule.getRecur();
+        LocalDateTime eventStartTime = jsonMap.getStart().toInstant().atZone(context.getZoneId()).toLocalDateTime();
+        LocalDateTime eventEndTime = jsonMap.getEnd().toInstant().atZone(context.getZoneId()).toLocalDateTime();
+        return !context.hasInterval() || dateProcessor.areIntervalsIntersected(Pair.of(eventStartTime, eventEndTime),
+            Pair.of(context.getIntervalStart(), context.getIntervalEnd()));
+    }
+
+    private void handleRecurrentEvent(EventProcessingContext context, List<CalendarEvent> jsonArrayList,
+        RRule<Temporal> rRule, VEvent event, CalendarEvent jsonMap)
+    {
+        ZoneId zoneId = context.getZoneId();
+        Recur<Temporal> recur = rRule.getRecur();
+        if (context.isCollapse()) {
             DtStart<?> dtStart = event.getDateTimeStart();
             Object startObj = dtStart.getDate();
-            if (!areIntervalDatesEmpty && recur.getDates(dateProcessor.toLocalDateTime(startObj, zoneId),
-                icalIntervalStart, icalIntervalEnd).isEmpty())
+            if (context.hasInterval() && !getOccurrences(event, recur, dateProcessor.toLocalDateTime(startObj, zoneId),
+                context.getIntervalStart(), context.getIntervalEnd(), 1, zoneId).hasNext())
             {
                 return;
             }
-            addRecurringEventsCollapsed(jsonMap, jsonArrayList, recur);
+            addRecurringEventsCollapsed(jsonMap, jsonArrayList, recur, context);
         } else {
             long differenceInMillis = jsonMap.getDatesDifference();
-            Recur<Temporal> recur = rRule.getRecur();
             DtStart<LocalDateTime> dtStart = event.getDateTimeStart();
-            List<Temporal> recurringEventStartDates =
-                recur.getDates(dtStart.getDate(), icalIntervalStart, icalIntervalEnd);
-            addRecurringEventsExpanded(jsonMap, differenceInMillis, jsonArrayList, recurringEventStartDates);
+            ExpansionBudget budget = context.getBudget();
+            Occurrences occurrences = context.getExpansionCache() == null ? null
+                : getCachedOccurrences(context, event, recur, dtStart.getDate(), jsonMap, differenceInMillis);
+            if (occurrences != null) {
+                addRecurringEventsExpanded(jsonMap, jsonArrayList, occurrences, context);
+                return;
+            }
+            OccurrenceIterator recurringEventStartDates = getOccurrences(event, recur, dtStart.getDate(),
+                context.getIntervalStart(), context.getIntervalEnd(), budget.getMaxInstancesPerEvent(), zoneId);
+            addRecurringEventsExpanded(jsonMap, differenceInMillis, jsonArrayList, recurringEventStartDates, context);
+            if (recurringEventStartDates.isTruncated()) {
+                budget.markExhausted();
+            }
+        }
+    }
+
+    /**
+     * Get the occurrences of a recurring event over the whole months covering the interval, so that the different
+     * intervals displayed for the same months share the same cache entry.
+     *
+     * @return the occurrences, or {@code null} if there are too many of them to be cached
+     */
+    private Occurrences getCachedOccurrences(EventProcessingContext context, VEvent event, Recur<Temporal> recur,
+        Temporal seed, CalendarEvent jsonMap, long differenceInMillis)
+    {
+        ZoneId zoneId = context.getZoneId();
+        LocalDateTime bucketStart = context.getIntervalStart().truncatedTo(ChronoUnit.DAYS).withDayOfMonth(1);
+        LocalDateTime bucketEnd = context.getIntervalEnd().truncatedTo(ChronoUnit.DAYS).withDayOfMonth(1);
+        if (bucketEnd.isBefore(context.getIntervalEnd())) {
+            bucketEnd = bucketEnd.plusMonths(1);
+        }
+        String key = getExpansionKey(event, differenceInMillis, bucketStart, bucketEnd, zoneId);
+        RecurrenceExpansionCache expansionCache = context.getExpansionCache();
+        Occurrences occurrences = expansionCache.get(key);
+        if (occurrences == null) {
+            OccurrenceIterator iterator = getOccurrences(event, recur, seed, bucketStart, bucketEnd,
+                context.getBudget().getMaxInstancesPerEvent(), zoneId);
+            List<long[]> dates = new ArrayList<>();
+            while (iterator.hasNext()) {
+                Temporal startDate = iterator.next();
+                dates.add(new long[] { dateProcessor.toUtilDate(startDate, zoneId).getTime(), dateProcessor
+                    .toUtilDate(computeEventEndDate(jsonMap, startDate, differenceInMillis), zoneId).getTime() });
+            }
+            if (iterator.isTruncated()) {
+                return null;
+            }
+            long[] starts = new long[dates.size()];
+            long[] ends = new long[dates.size()];
+            for (int i = 0; i < starts.length; i++) {
+                starts[i] = dates.get(i)[0];
+                ends[i] = dates.get(i)[1];
+            }
+            occurrences = new Occurrences(starts, ends);
+            expansionCache.put(key, occurrences);
+        }
+        return occurrences;
+    }
+
+    private String getExpansionKey(VEvent event, long differenceInMillis, LocalDateTime bucketStart,
+        LocalDateTime bucketEnd, ZoneId zoneId)
+    {
+        StringBuilder key = new StringBuilder();
+        key.append(zoneId).append('|').append(bucketStart).append('|').append(bucketEnd).append('|')
+            .append(differenceInMillis);
+        for (String propertyName : EXPANSION_KEY_PROPERTIES) {
+            for (Property property : event.<Property>getProperties(propertyName)) {
+                key.append('|').append(property);
+            }
+        }
+        return key.toString();
+    }
+
+    private OccurrenceIterator getOccurrences(VEvent event, Recur<Temporal> recur, Temporal seed,
+        LocalDateTime icalIntervalStart, LocalDateTime icalIntervalEnd, int maxCount, ZoneId zoneId)
+    {
+        return new OccurrenceIterator(recur, seed, icalIntervalStart, icalIntervalEnd,
+            getDates(event, Property.EXDATE), getDates(event, Property.RDATE), maxCount,
+            date -> dateProcessor.toUtilDate(date, zoneId).getTime());
+    }
+
+    private List<Temporal> getDates(VEvent event, String propertyName)
+    {
+        List<Temporal> dates = new ArrayList<>();
+        for (Property property : event.<Property>getProperties(propertyName)) {
+            if (property instanceof DateListProperty) {
+                dates.addAll(((DateListProperty<Temporal>) property).getDates());
+            }
+        }
+        return dates;
+    }
+
+    private void addRecurringEventsExpanded(CalendarEvent jsonMap, List<CalendarEvent> jsonArrayList,
+        Occurrences occurrences, EventProcessingContext context)
+    {
+        // The instances share the group id of the recurring event.
+        jsonMap.setGroupId(getGroupId(jsonMap, context));
+        ExpansionBudget budget = context.getBudget();
+        long intervalEnd = dateProcessor.toUtilDate(context.getIntervalEnd(), context.getZoneId()).getTime();
+        int first =
+            occurrences.indexOf(dateProcessor.toUtilDate(context.getIntervalStart(), context.getZoneId()).getTime());
+        int maxInstances = budget.getMaxInstancesPerEvent();
+        Set<Long> overriddenStarts = context.getOverriddenStarts(jsonMap.getId());
+        int i = 0;
+        for (int index = first; index < occurrences.size() && occurrences.getStart(index) <= intervalEnd; index++) {
+            if (overriddenStarts.contains(occurrences.getStart(index))) {
+                // The modified instance is added separately.
+                continue;
+            }
+            if (i >= maxInstances) {
+                budget.markExhausted();
+                break;
+            }
+            if (!budget.tryConsume()) {
+                break;
+            }
+            jsonArrayList.add(
+                new RecurrenceInstance(jsonMap, i, occurrences.getStart(index), occurrences.getEnd(index)));
+            i++;
         }
     }
 
     private void addRecurringEventsExpanded(CalendarEvent jsonMap, long differenceInMillis,
-        List<CalendarEvent> jsonArrayList, List<Temporal> recurringEventStartDates)
+        List<CalendarEvent> jsonArrayList, Iterator<Temporal> recurringEventStartDates, EventProcessingContext context)
     {
-        String groupId = String.format(GROUP_ID_FORMAT, jsonMap.getId());
-        for (int i = 0; i < recurringEventStartDates.size(); i++) {
-            CalendarEvent recurringEvent = new CalendarEvent(jsonMap);
-
-            recurringEvent.setStart(dateProcessor.toUtilDate(recurringEventStartDates.get(i), zoneId));
-            recurringEvent.setEnd(dateProcessor.toUtilDate(
-                computeEventEndDate(jsonMap, recurringEventStartDates.get(i), differenceInMillis), zoneId));
-            recurringEvent.setId(String.format("%s_%d", jsonMap.getId(), i));
-            recurringEvent.setGroupId(groupId);
-            jsonArrayList.add(recurringEvent);
+        // The instances share the group id of the recurring event.
+        jsonMap.setGroupId(getGroupId(jsonMap, context));
+        ZoneId zoneId = context.getZoneId();
+        Set<Long> overriddenStarts = context.getOverriddenStarts(jsonMap.getId());
+        int i = 0;
+        while (recurringEventStartDates.hasNext()) {
+            Temporal recurringEventStartDate = recurringEventStartDates.next();
+            Date start = dateProcessor.toUtilDate(recurringEventStartDate, zoneId);
+            if (overriddenStarts.contains(start.getTime())) {
+                // The modified instance is added separately.
+                continue;
+            }
+            if (!context.getBudget().tryConsume()) {
+                break;
+            }
+            Date end = dateProcessor.toUtilDate(
+                computeEventEndDate(jsonMap, recurringEventStartDate, differenceInMillis), zoneId);
+            jsonArrayList.add(new RecurrenceInstance(jsonMap, i, start.getTime(), end.getTime()));
+            i++;
         }
     }
 
@@ -182,20 +347,27 @@ public class RecurrenceProcessor
     }
 
     private void addRecurringEventsCollapsed(CalendarEvent jsonMap, List<CalendarEvent> jsonArrayList,
-        Recur<Temporal> recur)
+        Recur<Temporal> recur, EventProcessingContext context)
     {
-        String groupId = String.format(GROUP_ID_FORMAT, jsonMap.getId());
+        String groupId = getGroupId(jsonMap, context);
 
-        setRecurrenceEndDate(jsonMap, recur);
+        setRecurrenceEndDate(jsonMap, recur, context.getZoneId());
         jsonMap.setRecurrent(1);
         String frequency = recur.getFrequency().name();
         String eventFrequency = getEventFrequency(recur, frequency);
         jsonMap.setRecurrenceFreq(eventFrequency);
         jsonMap.setGroupId(groupId);
-        jsonArrayList.add(jsonMap);
+        addEvent(context, jsonArrayList, jsonMap);
     }
 
-    private void setRecurrenceEndDate(CalendarEvent jsonMap, Recur<Temporal> recur)
+    private String getGroupId(CalendarEvent jsonMap, EventProcessingContext context)
+    {
+        String groupId = String.format(GROUP_ID_FORMAT, jsonMap.getId());
+        // Shared by the events built from the same snapshot of the feed, as long as the snapshot is cached.
+        return context.getStringInterner() != null ? context.getStringInterner().intern(groupId) : groupId;
+    }
+
+    private void setRecurrenceEndDate(CalendarEvent jsonMap, Recur<Temporal> recur, ZoneId zoneId)
     {
         int recurCount = recur.getCount();
         if (recur.getUntil() != null) {
@@ -230,19 +402,23 @@ public class RecurrenceProcessor
         return new HashSet<>(byDayValue).containsAll(WEEK_DAYS) && byDayValue.size() == WEEK_DAYS.size();
     }
 
-    private void addRecurrentModifiedInstance(CalendarEvent jsonMap, List<CalendarEvent> jsonArrayList,
-        RecurrenceId<Temporal> recurrenceId)
+    /**
+     * Attach a modified instance to its recurring event, when the recurring events are collapsed.
+     *
+     * @param recurringEvent the recurring event, as added to the events list
+     * @param jsonMap the modified instance
+     * @param recurrenceId the original date of the modified instance
+     * @param zoneId {@link ZoneId}
+     * @since 2.5.5
+     */
+    public void addRecurrentModifiedInstance(CalendarEvent recurringEvent, CalendarEvent jsonMap,
+        RecurrenceId<Temporal> recurrenceId, ZoneId zoneId)
     {
-        RecurrentEventModification eventModification = getRecurrentEventModification(jsonMap, recurrenceId);
-
-        Optional<CalendarEvent> optionalModifiedEvent =
-            jsonArrayList.stream().filter(e -> e.getId().equals(jsonMap.getId())).findFirst();
-
-        optionalModifiedEvent.ifPresent(calendarEvent -> calendarEvent.addModifiedEvent(eventModification));
+        recurringEvent.addModifiedEvent(getRecurrentEventModification(jsonMap, recurrenceId, zoneId));
     }
 
     private RecurrentEventModification getRecurrentEventModification(CalendarEvent jsonMap,
-        RecurrenceId<Temporal> recurrenceId)
+        RecurrenceId<Temporal> recurrenceId, ZoneId zoneId)
     {
         RecurrentEventModification eventModification = new RecurrentEventModification();
         eventModification.setOriginalDate(dateProcessor.toUtilDate(recurrenceId.getValue(), zoneId));
@@ -0,0 +1,112 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.fullcalendar.internal.util;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.function.ToLongFunction;
+
+/**
+ * Least recently used map bounded by the total size of its values, as computed by a weigher. Values larger than the
+ * whole map are not kept. This class is not thread safe.
+ *
+ * @param <V> the type of the values
+ * @version $Id$
+ * @since 2.5.5
+ */
+public class SizeBoundedLruMap<V>
+{
+    private static final int INITIAL_CAPACITY = 16;
+
+    private static final float LOAD_FACTOR = 0.75f;
+
+    private final Map<String, V> entries = new LinkedHashMap<>(INITIAL_CAPACITY, LOAD_FACTOR, true);
+
+    private final ToLongFunction<V> weigher;
+
+    private long totalSize;
+
+    /**
+     * @param weigher computes the size of a value
+     */
+    public SizeBoundedLruMap(ToLongFunction<V> weigher)
+    {
+        this.weigher = weigher;
+    }
+
+    /**
+     * @param key the key
+     * @return the value associated with the key, or {@code null} if there is none
+     */
+    public V get(String key)
+    {
+        return this.entries.get(key);
+    }
+
+    /**
+     * Associate a value with a key, replacing any previous value, and evict the least recently used entries until the
+     * map fits again in the given size.
+     *
+     * @param key the key
+     * @param value the value
+     * @param maxSize the maximum total size of the values
+     * @return {@code true} if the value was kept, {@code false} if it is larger than the maximum size
+     */
+    public boolean put(String key, V value, long maxSize)
+    {
+        remove(key);
+        long size = this.weigher.applyAsLong(value);
+        if (size > maxSize) {
+            return false;
+        }
+        this.entries.put(key, value);
+        this.totalSize += size;
+
+        Iterator<V> iterator = this.entries.values().iterator();
+        while (this.totalSize > maxSize && iterator.hasNext()) {
+            V eldest = iterator.next();
+            iterator.remove();
+            this.totalSize -= this.weigher.applyAsLong(eldest);
+        }
+        return true;
+    }
+
+    /**
+     * @param key the key of the entry to remove
+     * @return the removed value, or {@code null} if there was none
+     */
+    public V remove(String key)
+    {
+        V removed = this.entries.remove(key);
+        if (removed != null) {
+            this.totalSize -= this.weigher.applyAsLong(removed);
+        }
+        return removed;
+    }
+
+    /**
+     * @return the total size of the values
+     */
+    public long getTotalSize()
+    {
+        return this.totalSize;
+    }
+}
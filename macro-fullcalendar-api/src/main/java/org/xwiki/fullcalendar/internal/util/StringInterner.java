@@ -0,0 +1,61 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.fullcalendar.internal.util;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Shares a single instance of the string values that repeat across the events of a calendar, such as their status,
+ * location or group id, so that the events built for a request do not each retain their own copy. The table is bound
+ * to a feed snapshot and stops growing once it holds {@link #MAX_SIZE} values.
+ *
+ * @version $Id$
+ * @since 2.5.5
+ */
+public class StringInterner
+{
+    /**
+     * The maximum number of values held by the table.
+     */
+    public static final int MAX_SIZE = 10000;
+
+    private final Map<String, String> values = new ConcurrentHashMap<>();
+
+    /**
+     * @param value a string value
+     * @return the shared instance equal to the given value, or the value itself if it is not shared
+     */
+    public String intern(String value)
+    {
+        if (value == null || value.isEmpty()) {
+            return value;
+        }
+        String shared = this.values.get(value);
+        if (shared != null) {
+            return shared;
+        }
+        if (this.values.size() >= MAX_SIZE) {
+            return value;
+        }
+        shared = this.values.putIfAbsent(value, value);
+        return shared != null ? shared : value;
+    }
+}
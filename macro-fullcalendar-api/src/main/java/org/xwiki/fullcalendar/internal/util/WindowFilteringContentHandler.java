@@ -0,0 +1,316 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.fullcalendar.internal.util;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import net.fortuna.ical4j.data.ContentHandler;
+import net.fortuna.ical4j.model.Component;
+import net.fortuna.ical4j.model.Property;
+
+/**
+ * {@link ContentHandler} that drops the {@link Component#VEVENT} components that cannot touch a given interval before
+ * they reach the handler building the calendar. Only one event is buffered at a time, so the memory used while
+ * parsing depends on the number of events in the interval rather than on the size of the feed. Recurring events and
+ * their modified instances are always kept, since their occurrences are only known after expansion. The check is
+ * done on the raw date values, ignoring time zones, so the interval is widened to keep every event that might match.
+ *
+ * @version $Id$
+ * @since 2.5.5
+ */
+public class WindowFilteringContentHandler implements ContentHandler
+{
+    private static final long MARGIN = TimeUnit.DAYS.toMillis(2);
+
+    private static final long DEFAULT_DURATION = TimeUnit.DAYS.toMillis(1);
+
+    private static final int DATE_LENGTH = 8;
+
+    private static final int DATE_TIME_LENGTH = 15;
+
+    private static final String WEEKS_SUFFIX = "W";
+
+    private static final int DAYS_PER_WEEK = 7;
+
+    private static final DateTimeFormatter DATE_FORMAT = DateTimeFormatter.BASIC_ISO_DATE;
+
+    private static final DateTimeFormatter DATE_TIME_FORMAT = DateTimeFormatter.ofPattern("yyyyMMdd'T'HHmmss");
+
+    private final ContentHandler delegate;
+
+    private final long windowStart;
+
+    private final long windowEnd;
+
+    private final List<Event> bufferedEvents = new ArrayList<>();
+
+    /**
+     * Nesting level inside the buffered event, {@code 0} when no event is being buffered.
+     */
+    private int eventDepth;
+
+    private String currentProperty;
+
+    private boolean recurring;
+
+    private String startValue;
+
+    private String endValue;
+
+    private String durationValue;
+
+    private enum EventType
+    {
+        START_COMPONENT,
+        END_COMPONENT,
+        START_PROPERTY,
+        PROPERTY_VALUE,
+        END_PROPERTY,
+        PARAMETER
+    }
+
+    private static final class Event
+    {
+        private final EventType type;
+
+        private final String name;
+
+        private final String value;
+
+        Event(EventType type, String name, String value)
+        {
+            this.type = type;
+            this.name = name;
+            this.value = value;
+        }
+    }
+
+    /**
+     * @param delegate the handler receiving the components that are kept
+     * @param windowStart the start of the interval, in milliseconds since the epoch
+     * @param windowEnd the end of the interval, in milliseconds since the epoch
+     */
+    public WindowFilteringContentHandler(ContentHandler delegate, long windowStart, long windowEnd)
+    {
+        this.delegate = delegate;
+        this.windowStart = windowStart - MARGIN;
+        this.windowEnd = windowEnd + MARGIN;
+    }
+
+    @Override
+    public void startCalendar()
+    {
+        this.delegate.startCalendar();
+    }
+
+    @Override
+    public void endCalendar() throws IOException
+    {
+        this.delegate.endCalendar();
+    }
+
+    @Override
+    public void startComponent(String name)
+    {
+        if (this.eventDepth > 0) {
+            this.eventDepth++;
+            buffer(EventType.START_COMPONENT, name, null);
+        } else if (Component.VEVENT.equalsIgnoreCase(name)) {
+            this.eventDepth = 1;
+            this.recurring = false;
+            this.startValue = null;
+            this.endValue = null;
+            this.durationValue = null;
+            buffer(EventType.START_COMPONENT, name, null);
+        } else {
+            this.delegate.startComponent(name);
+        }
+    }
+
+    @Override
+    public void endComponent(String name)
+    {
+        if (this.eventDepth == 0) {
+            this.delegate.endComponent(name);
+            return;
+        }
+        buffer(EventType.END_COMPONENT, name, null);
+        this.eventDepth--;
+        if (this.eventDepth == 0) {
+            try {
+                if (isKept()) {
+                    replay();
+                }
+            } finally {
+                this.bufferedEvents.clear();
+            }
+        }
+    }
+
+    @Override
+    public void startProperty(String name)
+    {
+        if (this.eventDepth > 0) {
+            this.currentProperty = name;
+            buffer(EventType.START_PROPERTY, name, null);
+        } else {
+            this.delegate.startProperty(name);
+        }
+    }
+
+    @Override
+    public void propertyValue(String value)
+    {
+        if (this.eventDepth == 0) {
+            this.delegate.propertyValue(value);
+            return;
+        }
+        buffer(EventType.PROPERTY_VALUE, this.currentProperty, value);
+        // Only the properties of the event itself matter, not the ones of its alarms.
+        if (this.eventDepth == 1) {
+            recordProperty(this.currentProperty, value);
+        }
+    }
+
+    @Override
+    public void endProperty(String name)
+    {
+        if (this.eventDepth > 0) {
+            buffer(EventType.END_PROPERTY, name, null);
+        } else {
+            this.delegate.endProperty(name);
+        }
+    }
+
+    @Override
+    public void parameter(String name, String value)
+    {
+        if (this.eventDepth > 0) {
+            buffer(EventType.PARAMETER, name, value);
+        } else {
+            this.delegate.parameter(name, value);
+        }
+    }
+
+    private void buffer(EventType type, String name, String value)
+    {
+        this.bufferedEvents.add(new Event(type, name, value));
+    }
+
+    private void recordProperty(String name, String value)
+    {
+        if (Property.RRULE.equalsIgnoreCase(name) || Property.RDATE.equalsIgnoreCase(name)
+            || Property.RECURRENCE_ID.equalsIgnoreCase(name))
+        {
+            this.recurring = true;
+        } else if (Property.DTSTART.equalsIgnoreCase(name)) {
+            this.startValue = value;
+        } else if (Property.DTEND.equalsIgnoreCase(name)) {
+            this.endValue = value;
+        } else if (Property.DURATION.equalsIgnoreCase(name)) {
+            this.durationValue = value;
+        }
+    }
+
+    private boolean isKept()
+    {
+        if (this.recurring || this.startValue == null) {
+            // Let the event processing decide.
+            return true;
+        }
+        try {
+            long start = parseDate(this.startValue);
+            long end;
+            if (this.endValue != null) {
+                end = parseDate(this.endValue);
+            } else if (this.durationValue != null) {
+                end = start + parseDuration(this.durationValue);
+            } else {
+                end = start + DEFAULT_DURATION;
+            }
+            return start < this.windowEnd && end > this.windowStart;
+        } catch (RuntimeException e) {
+            // Malformed date or duration, e.g. a week duration such as PXW: let the event processing report it.
+            return true;
+        }
+    }
+
+    private long parseDate(String value)
+    {
+        String trimmedValue = value.trim();
+        if (trimmedValue.length() < DATE_TIME_LENGTH) {
+            return LocalDate.parse(trimmedValue.substring(0, Math.min(DATE_LENGTH, trimmedValue.length())),
+                DATE_FORMAT).atStartOfDay().toInstant(ZoneOffset.UTC).toEpochMilli();
+        }
+        return LocalDateTime.parse(trimmedValue.substring(0, DATE_TIME_LENGTH), DATE_TIME_FORMAT)
+            .toInstant(ZoneOffset.UTC).toEpochMilli();
+    }
+
+    private long parseDuration(String value)
+    {
+        String trimmedValue = value.trim();
+        if (trimmedValue.endsWith(WEEKS_SUFFIX)) {
+            // ISO-8601 durations in weeks are not supported by java.time.Duration.
+            long weeks = Long.parseLong(trimmedValue.substring(trimmedValue.indexOf('P') + 1,
+                trimmedValue.length() - 1));
+            return TimeUnit.DAYS.toMillis(weeks * DAYS_PER_WEEK);
+        }
+        return Duration.parse(trimmedValue).toMillis();
+    }
+
+    private void replay()
+    {
+        for (Event event : this.bufferedEvents) {
+            replay(event);
+        }
+    }
+
+    private void replay(Event event)
+    {
+        switch (event.type) {
+            case START_COMPONENT:
+                this.delegate.startComponent(event.name);
+                break;
+            case END_COMPONENT:
+                this.delegate.endComponent(event.name);
+                break;
+            case START_PROPERTY:
+                this.delegate.startProperty(event.name);
+                break;
+            case PROPERTY_VALUE:
+                this.delegate.propertyValue(event.value);
+                break;
+            case END_PROPERTY:
+                this.delegate.endProperty(event.name);
+                break;
+            default:
+                this.delegate.parameter(event.name, event.value);
+                break;
+        }
+    }
+}
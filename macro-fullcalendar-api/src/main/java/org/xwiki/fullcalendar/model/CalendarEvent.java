@@ -26,10 +26,12 @@ import java.util.Map;
 
 import org.xwiki.stability.Unstable;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import com.fasterxml.jackson.databind.annotation.JsonSerialize;
 
 /**
- * Represents the data of a mocca calendar event.
+ * Represents the data of a mocca calendar event. The dates are stored as milliseconds since the epoch and the list of
+ * modified instances is only allocated when needed, to keep the many instances of an expanded recurring event small.
  *
  * @version $Id$
  * @since 2.4.0
@@ -37,15 +39,20 @@ import com.fasterxml.jackson.databind.annotation.JsonSerialize;
 @Unstable
 public class CalendarEvent
 {
+    /**
+     * The value of the date fields that are not set.
+     */
+    private static final long NO_DATE = Long.MIN_VALUE;
+
     private String id;
 
     private String title;
 
     @JsonSerialize(using = CustomDateSerializer.class)
-    private Date start;
+    private long start = NO_DATE;
 
     @JsonSerialize(using = CustomDateSerializer.class)
-    private Date end;
+    private long end = NO_DATE;
 
     private boolean allDay;
 
@@ -60,7 +67,7 @@ public class CalendarEvent
     private int recurrent;
 
     @JsonSerialize(using = CustomDateSerializer.class)
-    private Date recEndDate;
+    private long recEndDate = NO_DATE;
 
     private String recurrenceFreq;
 
@@ -77,7 +84,6 @@ public class CalendarEvent
      */
     public CalendarEvent()
     {
-        modificationList = new ArrayList<>();
     }
 
     /**
@@ -89,17 +95,19 @@ public class CalendarEvent
     {
         this.setId(calendarEvent.getId());
         this.setTitle(calendarEvent.getTitle());
-        this.setStart(calendarEvent.getStart());
-        this.setEnd(calendarEvent.getEnd());
+        this.start = calendarEvent.start;
+        this.end = calendarEvent.end;
         this.setAllDay(calendarEvent.isAllDay());
         this.setDescription(calendarEvent.getDescription());
         this.setLocation(calendarEvent.getLocation());
         this.setStatus(calendarEvent.getStatus());
         this.setRecurrent(calendarEvent.isRecurrent());
-        this.setRecEndDate(calendarEvent.getRecEndDate());
+        this.recEndDate = calendarEvent.recEndDate;
         this.setRecurrenceFreq(calendarEvent.getRecurrenceFreq());
         this.setGroupId(calendarEvent.getGroupId());
-        modificationList = new ArrayList<>(calendarEvent.getModificationList());
+        if (calendarEvent.modificationList != null) {
+            modificationList = new ArrayList<>(calendarEvent.modificationList);
+        }
     }
 
     /**
@@ -123,15 +131,27 @@ public class CalendarEvent
     }
 
     /**
-     * Get the modified instances to the recurrent event.
+     * Get the modified instances to the recurrent event. Use {@link #addModifiedEvent} to add a modified instance.
      *
      * @return the modified instances from the recurrent event.
      */
     public List<RecurrentEventModification> getModificationList()
     {
+        // Created on first use, since most events have no modified instance.
+        if (modificationList == null) {
+            modificationList = new ArrayList<>();
+        }
         return modificationList;
     }
 
+    /**
+     * @return {@code true} if modified instances were added to this event, without creating the list
+     */
+    boolean hasModifiedEvents()
+    {
+        return this.modificationList != null && !this.modificationList.isEmpty();
+    }
+
     /**
      * Add a modified recurrence instance.
      *
@@ -139,6 +159,9 @@ public class CalendarEvent
      */
     public void addModifiedEvent(RecurrentEventModification modificationResult)
     {
+        if (this.modificationList == null) {
+            this.modificationList = new ArrayList<>(1);
+        }
         this.modificationList.add(modificationResult);
     }
 
@@ -209,7 +232,7 @@ public class CalendarEvent
      */
     public Date getRecEndDate()
     {
-        return recEndDate;
+        return toDate(recEndDate);
     }
 
     /**
@@ -219,7 +242,7 @@ public class CalendarEvent
      */
     public void setRecEndDate(Date recEndDate)
     {
-        this.recEndDate = recEndDate;
+        this.recEndDate = recEndDate != null ? recEndDate.getTime() : NO_DATE;
     }
 
     /**
@@ -229,7 +252,7 @@ public class CalendarEvent
      */
     public Date getEnd()
     {
-        return end;
+        return toDate(end);
     }
 
     /**
@@ -239,7 +262,7 @@ public class CalendarEvent
      */
     public void setEnd(Date end)
     {
-        this.end = end;
+        this.end = end != null ? end.getTime() : NO_DATE;
     }
 
     /**
@@ -249,7 +272,7 @@ public class CalendarEvent
      */
     public Date getStart()
     {
-        return start;
+        return toDate(start);
     }
 
     /**
@@ -259,7 +282,7 @@ public class CalendarEvent
      */
     public void setStart(Date start)
     {
-        this.start = start;
+        this.start = start != null ? start.getTime() : NO_DATE;
     }
 
     /**
@@ -369,7 +392,45 @@ public class CalendarEvent
      */
     public long getDatesDifference()
     {
-        return end.getTime() - start.getTime();
+        return end - start;
+    }
+
+    /**
+     * @return the start of the event, in milliseconds since the epoch, see {@link #getStart()}
+     * @since 2.5.5
+     */
+    @JsonIgnore
+    public long getStartMillis()
+    {
+        return start;
+    }
+
+    /**
+     * @param start the start of the event, in milliseconds since the epoch, see {@link #setStart(Date)}
+     * @since 2.5.5
+     */
+    public void setStartMillis(long start)
+    {
+        this.start = start;
+    }
+
+    /**
+     * @return the end of the event, in milliseconds since the epoch, see {@link #getEnd()}
+     * @since 2.5.5
+     */
+    @JsonIgnore
+    public long getEndMillis()
+    {
+        return end;
+    }
+
+    /**
+     * @param end the end of the event, in milliseconds since the epoch, see {@link #setEnd(Date)}
+     * @since 2.5.5
+     */
+    public void setEndMillis(long end)
+    {
+        this.end = end;
     }
 
     /**
@@ -426,4 +487,9 @@ public class CalendarEvent
     {
         this.color = color;
     }
+
+    private static Date toDate(long epochMillis)
+    {
+        return epochMillis != NO_DATE ? new Date(epochMillis) : null;
+    }
 }
@@ -20,9 +20,10 @@
 package org.xwiki.fullcalendar.model;
 
 import java.io.IOException;
-import java.text.DateFormat;
-import java.text.SimpleDateFormat;
+import java.time.LocalDate;
 import java.util.Date;
+import java.util.TimeZone;
+import java.util.concurrent.TimeUnit;
 
 import org.xwiki.stability.Unstable;
 
@@ -31,8 +32,10 @@ import com.fasterxml.jackson.databind.JsonSerializer;
 import com.fasterxml.jackson.databind.SerializerProvider;
 
 /**
- * Custom serializer for {@link Date} objects. Uses a {@link SimpleDateFormat} to format the object into a string with
- * the pattern: "yyyy-MM-dd'T'HH:mm:ss.sss".
+ * Custom serializer for {@link Date} objects. Formats the object into a string with the pattern:
+ * "yyyy-MM-dd'T'HH:mm:ss.SSS", in the default time zone of the JVM. The characters are written directly from the
+ * epoch milliseconds into a buffer of the current thread handed to the generator, so that serializing many events does
+ * not allocate a formatter and strings for each date. The date part is formatted again only when the day changes.
  *
  * @version $Id$
  * @since 2.4.3
@@ -40,11 +43,104 @@ import com.fasterxml.jackson.databind.SerializerProvider;
 @Unstable
 public class CustomDateSerializer extends JsonSerializer<Date>
 {
-    private final DateFormat jsonDateFormat = new SimpleDateFormat("yyyy-MM-dd'T'HH:mm:ss.sss");
+    private static final long DAY_MILLIS = TimeUnit.DAYS.toMillis(1);
+
+    private static final int YEAR_DIGITS = 4;
+
+    private static final int YEAR_MODULUS = 10000;
+
+    private static final int FIELD_DIGITS = 2;
+
+    private static final int MILLIS_DIGITS = 3;
+
+    private static final int MINUTES_PER_HOUR = 60;
+
+    private static final int SECONDS_PER_MINUTE = 60;
+
+    private static final int MILLIS_PER_SECOND = 1000;
+
+    private static final int RADIX = 10;
+
+    private static final int LENGTH = 23;
+
+    /**
+     * The length of the "yyyy-MM-dd'T'" part.
+     */
+    private static final int DATE_LENGTH = 11;
+
+    private static final ThreadLocal<DateBuffer> BUFFERS = ThreadLocal.withInitial(DateBuffer::new);
+
+    private final TimeZone timeZone = TimeZone.getDefault();
+
+    /**
+     * The characters of the last date formatted by a thread, starting with the date part of its day.
+     */
+    private static final class DateBuffer
+    {
+        private final char[] chars = new char[LENGTH];
+
+        private long epochDay = Long.MIN_VALUE;
+    }
 
     @Override
     public void serialize(Date value, JsonGenerator gen, SerializerProvider serializers) throws IOException
     {
-        gen.writeString(value != null ? jsonDateFormat.format(value) : null);
+        if (value == null) {
+            gen.writeNull();
+            return;
+        }
+        // The generator copies the characters, so the buffer can be reused right away.
+        char[] chars = format(value.getTime(), BUFFERS.get());
+        gen.writeString(chars, 0, LENGTH);
+    }
+
+    private char[] format(long epochMillis, DateBuffer buffer)
+    {
+        long localMillis = epochMillis + this.timeZone.getOffset(epochMillis);
+        long epochDay = Math.floorDiv(localMillis, DAY_MILLIS);
+        char[] chars = buffer.chars;
+        if (epochDay != buffer.epochDay) {
+            formatDate(epochDay, chars);
+            buffer.epochDay = epochDay;
+        }
+        long millisOfDay = Math.floorMod(localMillis, DAY_MILLIS);
+        int position =
+            writeDigits(chars, DATE_LENGTH, (int) TimeUnit.MILLISECONDS.toHours(millisOfDay), FIELD_DIGITS);
+        chars[position++] = ':';
+        position = writeDigits(chars, position,
+            (int) (TimeUnit.MILLISECONDS.toMinutes(millisOfDay) % MINUTES_PER_HOUR), FIELD_DIGITS);
+        chars[position++] = ':';
+        position = writeDigits(chars, position,
+            (int) (TimeUnit.MILLISECONDS.toSeconds(millisOfDay) % SECONDS_PER_MINUTE), FIELD_DIGITS);
+        chars[position++] = '.';
+        writeDigits(chars, position, (int) (millisOfDay % MILLIS_PER_SECOND), MILLIS_DIGITS);
+        return chars;
+    }
+
+    private static void formatDate(long epochDay, char[] chars)
+    {
+        LocalDate date = LocalDate.ofEpochDay(epochDay);
+        // Years outside of 0-9999 are not expected in calendars, keep the 4 lowest digits like a fixed width.
+        int position = writeDigits(chars, 0, Math.floorMod(date.getYear(), YEAR_MODULUS), YEAR_DIGITS);
+        chars[position++] = '-';
+        position = writeDigits(chars, position, date.getMonthValue(), FIELD_DIGITS);
+        chars[position++] = '-';
+        position = writeDigits(chars, position, date.getDayOfMonth(), FIELD_DIGITS);
+        chars[position] = 'T';
+    }
+
+    /**
+     * Write the decimal digits of a value, left-padded with zeros.
+     *
+     * @return the position after the written digits
+     */
+    private static int writeDigits(char[] chars, int offset, int value, int length)
+    {
+        int remaining = value;
+        for (int i = offset + length - 1; i >= offset; i--) {
+            chars[i] = (char) ('0' + remaining % RADIX);
+            remaining /= RADIX;
+        }
+        return offset + length;
     }
 }
@@ -0,0 +1,126 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.fullcalendar.model;
+
+import java.util.Date;
+
+import org.xwiki.model.reference.DocumentReference;
+import org.xwiki.stability.Unstable;
+
+/**
+ * An event stored as an object in a wiki page, as read from the database without loading the page.
+ *
+ * @version $Id$
+ * @since 2.5.5
+ */
+@Unstable
+public class ObjectEvent
+{
+    private final DocumentReference documentReference;
+
+    private final String title;
+
+    private final String url;
+
+    private final Date start;
+
+    private final Date end;
+
+    private final Object duration;
+
+    private final Date documentDate;
+
+    /**
+     * @param documentReference the page holding the event object
+     * @param title the plain title of the page
+     * @param url the external URL of the page
+     * @param start the value of the start date field
+     * @param end the value of the end date field, {@code null} if there is none
+     * @param duration the value of the duration field, {@code null} if there is none
+     * @param documentDate the last modification date of the page
+     */
+    public ObjectEvent(DocumentReference documentReference, String title, String url, Date start, Date end,
+        Object duration, Date documentDate)
+    {
+        this.documentReference = documentReference;
+        this.title = title;
+        this.url = url;
+        this.start = start;
+        this.end = end;
+        this.duration = duration;
+        this.documentDate = documentDate;
+    }
+
+    /**
+     * @return the page holding the event object
+     */
+    public DocumentReference getDocumentReference()
+    {
+        return this.documentReference;
+    }
+
+    /**
+     * @return the plain title of the page
+     */
+    public String getTitle()
+    {
+        return this.title;
+    }
+
+    /**
+     * @return the external URL of the page
+     */
+    public String getURL()
+    {
+        return this.url;
+    }
+
+    /**
+     * @return the value of the start date field
+     */
+    public Date getStart()
+    {
+        return this.start;
+    }
+
+    /**
+     * @return the value of the end date field, {@code null} if there is none
+     */
+    public Date getEnd()
+    {
+        return this.end;
+    }
+
+    /**
+     * @return the value of the duration field, in minutes, {@code null} if there is none
+     */
+    public Object getDuration()
+    {
+        return this.duration;
+    }
+
+    /**
+     * @return the last modification date of the page, to know if the event changed
+     */
+    public Date getDocumentDate()
+    {
+        return this.documentDate;
+    }
+}
@@ -0,0 +1,116 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.fullcalendar.model;
+
+import java.util.Collections;
+import java.util.List;
+
+import org.xwiki.stability.Unstable;
+
+/**
+ * An instance of an expanded recurring event. It only holds its position in the recurrence and its dates, and takes
+ * its other properties from the recurring event it was generated from, unless they are set on the instance itself.
+ * It is serialized like a copy of the recurring event made with {@link CalendarEvent#CalendarEvent(CalendarEvent)},
+ * with its own dates and an identifier made of the identifier of the recurring event and the position of the instance.
+ *
+ * @version $Id$
+ * @since 2.5.5
+ */
+@Unstable
+public class RecurrenceInstance extends CalendarEvent
+{
+    private final CalendarEvent recurringEvent;
+
+    private final int index;
+
+    /**
+     * @param recurringEvent the recurring event the instance was generated from
+     * @param index the position of the instance in the recurrence
+     * @param start the start of the instance, in milliseconds since the epoch
+     * @param end the end of the instance, in milliseconds since the epoch
+     */
+    public RecurrenceInstance(CalendarEvent recurringEvent, int index, long start, long end)
+    {
+        this.recurringEvent = recurringEvent;
+        this.index = index;
+        setStartMillis(start);
+        setEndMillis(end);
+        setAllDay(recurringEvent.isAllDay());
+        setRecurrent(recurringEvent.isRecurrent());
+        setRecEndDate(recurringEvent.getRecEndDate());
+    }
+
+    @Override
+    public String getId()
+    {
+        String id = super.getId();
+        return id != null ? id : this.recurringEvent.getId() + '_' + this.index;
+    }
+
+    @Override
+    public String getTitle()
+    {
+        String title = super.getTitle();
+        return title != null ? title : this.recurringEvent.getTitle();
+    }
+
+    @Override
+    public String getDescription()
+    {
+        String description = super.getDescription();
+        return description != null ? description : this.recurringEvent.getDescription();
+    }
+
+    @Override
+    public String getLocation()
+    {
+        String location = super.getLocation();
+        return location != null ? location : this.recurringEvent.getLocation();
+    }
+
+    @Override
+    public String getStatus()
+    {
+        String status = super.getStatus();
+        return status != null ? status : this.recurringEvent.getStatus();
+    }
+
+    @Override
+    public String getRecurrenceFreq()
+    {
+        String recurrenceFreq = super.getRecurrenceFreq();
+        return recurrenceFreq != null ? recurrenceFreq : this.recurringEvent.getRecurrenceFreq();
+    }
+
+    @Override
+    public String getGroupId()
+    {
+        String groupId = super.getGroupId();
+        return groupId != null ? groupId : this.recurringEvent.getGroupId();
+    }
+
+    @Override
+    public List<RecurrentEventModification> getModificationList()
+    {
+        // The modifications of the recurring event are shared by all its instances, which must not change them.
+        return hasModifiedEvents() ? super.getModificationList()
+            : Collections.unmodifiableList(this.recurringEvent.getModificationList());
+    }
+}
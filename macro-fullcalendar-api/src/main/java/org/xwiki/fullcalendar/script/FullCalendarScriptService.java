@@ -19,16 +19,31 @@
  */
 package org.xwiki.fullcalendar.script;
 
+import java.io.StringWriter;
+import java.net.MalformedURLException;
 import java.net.URL;
+import java.util.ArrayList;
 import java.util.Date;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
 
 import javax.inject.Inject;
 import javax.inject.Named;
+import javax.inject.Provider;
 import javax.inject.Singleton;
 
+import org.apache.commons.codec.digest.DigestUtils;
+import org.apache.commons.lang3.StringUtils;
 import org.xwiki.component.annotation.Component;
 import org.xwiki.fullcalendar.FullCalendarManager;
+import org.xwiki.fullcalendar.internal.ObjectEventSource;
+import org.xwiki.fullcalendar.model.ObjectEvent;
 import org.xwiki.script.service.ScriptService;
+import org.xwiki.stability.Unstable;
+
+import com.xpn.xwiki.XWikiContext;
+import com.xpn.xwiki.web.XWikiResponse;
 
 /**
  * Exposes simplified APIs to perform calendar operations.
@@ -41,9 +56,28 @@ import org.xwiki.script.service.ScriptService;
 @Singleton
 public class FullCalendarScriptService implements ScriptService
 {
+    private static final int NOT_MODIFIED = 304;
+
+    /**
+     * Writes to the current response.
+     *
+     * @param <T> the type of the result
+     */
+    @FunctionalInterface
+    private interface ResponseWrite<T>
+    {
+        T write(XWikiResponse response) throws Exception;
+    }
+
     @Inject
     private FullCalendarManager fullCalendarManager;
 
+    @Inject
+    private Provider<XWikiContext> xcontextProvider;
+
+    @Inject
+    private ObjectEventSource objectEventSource;
+
     /**
      * Convert an iCal to a JSON.
      *
@@ -85,4 +119,206 @@ public class FullCalendarScriptService implements ScriptService
     {
         return fullCalendarManager.getICalEvents(new URL(iCalStringURL), startDate, endDate, collapse);
     }
+
+    /**
+     * Write the events from an iCal in a specified date interval directly to the response, as JSON. The events are
+     * written one at a time, so the JSON is never held in memory. The caller should then mark the request as finished
+     * so that nothing else is written to the response. If the writing fails, what was written is discarded unless the
+     * response is already sent, and the caller should answer with an error status instead.
+     *
+     * @param iCalStringURL the String representation of an iCal URL.
+     * @param startDate the start of the interval of the returned calendar events.
+     * @param endDate the end of the interval.
+     * @param collapse expands the recurring events if {@code false}, or collapses them into the parent otherwise.
+     * @throws Exception if the retrieval of the iCal fails, if it contains malformed dates or if the writing fails.
+     * @since 2.5.5
+     */
+    @Unstable
+    public void writeICalEvents(String iCalStringURL, Date startDate, Date endDate, boolean collapse) throws Exception
+    {
+        writeToResponse(response -> {
+            fullCalendarManager.writeICalEvents(new URL(iCalStringURL), startDate, endDate, collapse,
+                response.getWriter());
+            return null;
+        });
+    }
+
+    /**
+     * Write the events from an iCal in a specified date interval that changed since the version identified by a sync
+     * token directly to the response, as JSON. See
+     * {@link FullCalendarManager#writeICalEventChanges(URL, Date, Date, boolean, String, java.io.Writer)}. The caller
+     * should then mark the request as finished so that nothing else is written to the response.
+     *
+     * @param iCalStringURL the String representation of an iCal URL.
+     * @param startDate the start of the interval of the returned calendar events.
+     * @param endDate the end of the interval.
+     * @param collapse expands the recurring events if {@code false}, or collapses them into the parent otherwise.
+     * @param syncToken the token returned by the previous call, {@code null} or empty to get all the events.
+     * @throws Exception if the retrieval of the iCal fails, if it contains malformed dates or if the writing fails.
+     * @since 2.5.5
+     */
+    @Unstable
+    public void writeICalEventChanges(String iCalStringURL, Date startDate, Date endDate, boolean collapse,
+        String syncToken) throws Exception
+    {
+        writeToResponse(response -> {
+            fullCalendarManager.writeICalEventChanges(new URL(iCalStringURL), startDate, endDate, collapse,
+                StringUtils.defaultIfEmpty(syncToken, null), response.getWriter());
+            return null;
+        });
+    }
+
+    /**
+     * Get the events from several iCals in a specified date interval, merged in a single list sorted by start date.
+     * The iCals are fetched concurrently and the URL of the iCal of each event is stored in the {@code source} entry
+     * of its {@code meta} property. The iCals that can't be retrieved are skipped.
+     *
+     * @param iCalStringURLs the String representations of the iCal URLs.
+     * @param startDate the start of the interval of the returned calendar events.
+     * @param endDate the end of the interval.
+     * @param collapse expands the recurring events if {@code false}, or collapses them into the parent otherwise.
+     * @return a JSON that contains a list of FullCalendar Event Objects.
+     * @throws Exception if the retrieval of all the iCals fails.
+     * @since 2.5.5
+     */
+    @Unstable
+    public String getICalEvents(List<String> iCalStringURLs, Date startDate, Date endDate, boolean collapse)
+        throws Exception
+    {
+        StringWriter writer = new StringWriter();
+        fullCalendarManager.writeICalEvents(toURLs(iCalStringURLs), startDate, endDate, collapse, writer);
+        return writer.toString();
+    }
+
+    /**
+     * Write the events from several iCals in a specified date interval directly to the response, as a single JSON
+     * list sorted by start date. See {@link #getICalEvents(List, Date, Date, boolean)}. The caller should then mark
+     * the request as finished so that nothing else is written to the response.
+     *
+     * @param iCalStringURLs the String representations of the iCal URLs.
+     * @param startDate the start of the interval of the returned calendar events.
+     * @param endDate the end of the interval.
+     * @param collapse expands the recurring events if {@code false}, or collapses them into the parent otherwise.
+     * @throws Exception if the retrieval of all the iCals fails, or if the writing fails.
+     * @since 2.5.5
+     */
+    @Unstable
+    public void writeICalEvents(List<String> iCalStringURLs, Date startDate, Date endDate, boolean collapse)
+        throws Exception
+    {
+        writeToResponse(response -> {
+            fullCalendarManager.writeICalEvents(toURLs(iCalStringURLs), startDate, endDate, collapse,
+                response.getWriter());
+            return null;
+        });
+    }
+
+    /**
+     * Answer a conditional request for the events from an iCal in a specified date interval: set the {@code ETag}
+     * header of the response, then either write the events directly to the response, as JSON, or answer with the
+     * {@code 304 Not Modified} status if the validator matches the {@code If-None-Match} header of the request. The
+     * validator and the events come from the same version of the iCal. The caller should then mark the request as
+     * finished so that nothing else is written to the response.
+     *
+     * @param iCalStringURL the String representation of an iCal URL.
+     * @param startDate the start of the interval of the returned calendar events.
+     * @param endDate the end of the interval.
+     * @param collapse expands the recurring events if {@code false}, or collapses them into the parent otherwise.
+     * @return {@code true} if the events were written, {@code false} if the client already has them.
+     * @throws Exception if the retrieval of the iCal fails, if it contains malformed dates or if the writing fails.
+     * @since 2.5.5
+     */
+    @Unstable
+    public boolean writeICalEventsIfModified(String iCalStringURL, Date startDate, Date endDate, boolean collapse)
+        throws Exception
+    {
+        String ifNoneMatch = xcontextProvider.get().getRequest().getHeader("If-None-Match");
+        // The ETag is discarded with the rest of the response if the writing fails before the response is sent.
+        return writeToResponse(response -> {
+            boolean written = fullCalendarManager.writeICalEvents(new URL(iCalStringURL), startDate, endDate,
+                collapse, ifNoneMatch, eTag -> response.setHeader("ETag", eTag), response.getWriter());
+            if (!written) {
+                response.setStatus(NOT_MODIFIED);
+            }
+            return written;
+        });
+    }
+
+    /**
+     * Get the events stored as objects in wiki pages that can occur in a specified date interval. The events are read
+     * with a single query, filtered on the interval and projected on the needed fields, without loading the pages.
+     *
+     * @param className the class of the event objects.
+     * @param startField the date field holding the start of the events.
+     * @param endField the date field holding the end of the events, empty if the events don't have an end.
+     * @param durationField the field holding the duration of the events in minutes, used when there is no end field.
+     * @param startDate the start of the interval of the returned events, {@code null} for no limit.
+     * @param endDate the end of the interval, {@code null} for no limit.
+     * @return the events that the current user can view, or {@code null} if the fields of the class cannot be read
+     *     this way, e.g. because the start field is not a date, in which case the pages have to be loaded.
+     * @throws Exception if the query fails.
+     * @since 2.5.5
+     */
+    @Unstable
+    public List<ObjectEvent> getObjectEvents(String className, String startField, String endField,
+        String durationField, Date startDate, Date endDate) throws Exception
+    {
+        return objectEventSource.getEvents(className, startField, endField, durationField, startDate, endDate);
+    }
+
+    /**
+     * Get the last modification dates of documents without loading them, e.g. to compute the validator of the events
+     * they hold with {@link #getETag(List)}. The date of a document is the most recent one of its translations.
+     *
+     * @param documentNames the full names of documents of the current wiki, e.g. the result of a query.
+     * @return the last modification dates of the documents that the current user can view, by full name.
+     * @throws Exception if the query fails.
+     * @since 2.5.5
+     */
+    @Unstable
+    public Map<String, Date> getModificationDates(List<String> documentNames) throws Exception
+    {
+        return objectEventSource.getModificationDates(documentNames);
+    }
+
+    /**
+     * Compute a strong validator from the values that a response depends on.
+     *
+     * @param values the values that the response depends on, e.g. the last modification date of its data and the
+     *     request parameters.
+     * @return the validator, quoted as expected by the {@code ETag} header.
+     * @since 2.5.5
+     */
+    @Unstable
+    public String getETag(List<?> values)
+    {
+        return '"' + DigestUtils.sha256Hex(values.stream().map(String::valueOf).collect(Collectors.joining("|")))
+            + '"';
+    }
+
+    /**
+     * Write to the current response, discarding what was written if the writing fails before the response is sent, so
+     * that the client doesn't get a partial list of events. A response that is already sent is left truncated.
+     */
+    private <T> T writeToResponse(ResponseWrite<T> write) throws Exception
+    {
+        XWikiResponse response = xcontextProvider.get().getResponse();
+        try {
+            return write.write(response);
+        } catch (Exception e) {
+            if (!response.isCommitted()) {
+                response.reset();
+            }
+            throw e;
+        }
+    }
+
+    private List<URL> toURLs(List<String> iCalStringURLs) throws MalformedURLException
+    {
+        List<URL> urls = new ArrayList<>(iCalStringURLs.size());
+        for (String iCalStringURL : iCalStringURLs) {
+            urls.add(new URL(iCalStringURL));
+        }
+        return urls;
+    }
 }
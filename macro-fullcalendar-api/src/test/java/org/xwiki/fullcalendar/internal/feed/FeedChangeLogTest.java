@@ -0,0 +1,104 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.fullcalendar.internal.feed;
+
+import java.util.Set;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+/**
+ * Unit tests for {@link FeedChangeLog}.
+ *
+ * @version $Id$
+ */
+class FeedChangeLogTest
+{
+    private static final int MAX_VERSIONS = 20;
+
+    @Test
+    void start()
+    {
+        FeedChangeLog changeLog = FeedChangeLog.start("v1");
+
+        assertEquals("v1", changeLog.getCurrentVersion());
+        assertEquals(Set.of(), changeLog.getChangedUids("v1"));
+        assertNull(changeLog.getChangedUids("v0"));
+    }
+
+    @Test
+    void changedUidsAreCumulatedAlongTheChain()
+    {
+        FeedChangeLog changeLog = FeedChangeLog.start("v1").append("v2", Set.of("a"), MAX_VERSIONS)
+            .append("v3", Set.of("b"), MAX_VERSIONS).append("v4", Set.of("a", "c"), MAX_VERSIONS);
+
+        assertEquals("v4", changeLog.getCurrentVersion());
+        assertEquals(Set.of("a", "b", "c"), changeLog.getChangedUids("v1"));
+        assertEquals(Set.of("a", "b", "c"), changeLog.getChangedUids("v2"));
+        assertEquals(Set.of("a", "c"), changeLog.getChangedUids("v3"));
+        assertEquals(Set.of(), changeLog.getChangedUids("v4"));
+    }
+
+    @Test
+    void appendDoesNotModifyThePreviousLog()
+    {
+        FeedChangeLog previous = FeedChangeLog.start("v1").append("v2", Set.of("a"), MAX_VERSIONS);
+
+        previous.append("v3", Set.of("b"), MAX_VERSIONS);
+
+        assertEquals("v2", previous.getCurrentVersion());
+        assertEquals(Set.of("a"), previous.getChangedUids("v1"));
+        assertNull(previous.getChangedUids("v3"));
+    }
+
+    @Test
+    void oldestVersionsAreForgotten()
+    {
+        FeedChangeLog changeLog = FeedChangeLog.start("v1").append("v2", Set.of("a"), 3)
+            .append("v3", Set.of("b"), 3).append("v4", Set.of("c"), 3);
+
+        assertNull(changeLog.getChangedUids("v1"));
+        assertEquals(Set.of("b", "c"), changeLog.getChangedUids("v2"));
+        assertEquals(Set.of("c"), changeLog.getChangedUids("v3"));
+    }
+
+    @Test
+    void unknownChangesStartOver()
+    {
+        FeedChangeLog changeLog =
+            FeedChangeLog.start("v1").append("v2", Set.of("a"), MAX_VERSIONS).append("v3", null, MAX_VERSIONS);
+
+        assertEquals("v3", changeLog.getCurrentVersion());
+        assertNull(changeLog.getChangedUids("v1"));
+        assertNull(changeLog.getChangedUids("v2"));
+        assertEquals(Set.of(), changeLog.getChangedUids("v3"));
+    }
+
+    @Test
+    void versionsAreNotRememberedWithALimitBelowTwo()
+    {
+        FeedChangeLog changeLog = FeedChangeLog.start("v1").append("v2", Set.of("a"), 1);
+
+        assertNull(changeLog.getChangedUids("v1"));
+        assertEquals(Set.of(), changeLog.getChangedUids("v2"));
+    }
+}
@@ -0,0 +1,273 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.fullcalendar.internal.feed;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.GZIPOutputStream;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.xwiki.fullcalendar.internal.FullCalendarConfiguration;
+import org.xwiki.fullcalendar.internal.metrics.FeedMetrics;
+import org.xwiki.fullcalendar.internal.metrics.FeedMetricsRegistry;
+import org.xwiki.test.annotation.BeforeComponent;
+import org.xwiki.test.junit5.mockito.ComponentTest;
+import org.xwiki.test.junit5.mockito.InjectMockComponents;
+import org.xwiki.test.junit5.mockito.MockComponent;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * Unit tests for {@link FeedFetcher}, against a local HTTP server.
+ *
+ * @version $Id$
+ */
+@ComponentTest
+class FeedFetcherTest
+{
+    private static final byte[] CONTENT =
+        "BEGIN:VCALENDAR\r\nVERSION:2.0\r\nEND:VCALENDAR\r\n".getBytes(StandardCharsets.UTF_8);
+
+    private static final String ETAG = "\"v1\"";
+
+    private static final int SHORT_TIMEOUT = 200;
+
+    private static final int LONG_TIMEOUT = 10000;
+
+    @InjectMockComponents
+    private FeedFetcher feedFetcher;
+
+    @MockComponent
+    private FeedCache feedCache;
+
+    @MockComponent
+    private FullCalendarConfiguration configuration;
+
+    @MockComponent
+    private FeedMetricsRegistry feedMetricsRegistry;
+
+    private final CountDownLatch serverRelease = new CountDownLatch(1);
+
+    private ExecutorService serverExecutor;
+
+    private HttpServer server;
+
+    private volatile HttpHandler handler;
+
+    private URL feedURL;
+
+    @BeforeComponent
+    void configure()
+    {
+        when(this.configuration.getFetchThreads()).thenReturn(2);
+        when(this.configuration.getFetchMaxPerHost()).thenReturn(2);
+        when(this.configuration.getFetchConnectTimeout()).thenReturn(LONG_TIMEOUT);
+        when(this.configuration.getFetchReadTimeout()).thenReturn(LONG_TIMEOUT);
+        when(this.configuration.getFetchDeadline()).thenReturn((long) LONG_TIMEOUT);
+    }
+
+    @BeforeEach
+    void setUp() throws Exception
+    {
+        when(this.feedMetricsRegistry.get(anyString()))
+            .thenAnswer(invocation -> new FeedMetrics(invocation.getArgument(0)));
+
+        this.server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 0);
+        this.server.createContext("/", exchange -> {
+            try {
+                this.handler.handle(exchange);
+            } finally {
+                exchange.close();
+            }
+        });
+        this.serverExecutor = Executors.newCachedThreadPool();
+        this.server.setExecutor(this.serverExecutor);
+        this.server.start();
+        this.feedURL = new URL("http", InetAddress.getLoopbackAddress().getHostAddress(),
+            this.server.getAddress().getPort(), "/calendar.ics");
+    }
+
+    @AfterEach
+    void tearDown()
+    {
+        this.serverRelease.countDown();
+        this.server.stop(0);
+        this.serverExecutor.shutdownNow();
+    }
+
+    @Test
+    void successfulResponseIsCached() throws Exception
+    {
+        this.handler = exchange -> {
+            exchange.getResponseHeaders().set("ETag", ETAG);
+            send(exchange, HttpURLConnection.HTTP_OK, CONTENT);
+        };
+
+        CachedFeed feed = this.feedFetcher.fetch(this.feedURL);
+
+        assertArrayEquals(CONTENT, feed.getContent());
+        assertEquals(ETAG, feed.getETag());
+        verify(this.feedCache).put(feed);
+    }
+
+    @Test
+    void gzipResponseIsDecoded() throws Exception
+    {
+        AtomicReference<String> acceptEncoding = new AtomicReference<>();
+        this.handler = exchange -> {
+            acceptEncoding.set(exchange.getRequestHeaders().getFirst("Accept-Encoding"));
+            exchange.getResponseHeaders().set("Content-Encoding", "gzip");
+            ByteArrayOutputStream compressed = new ByteArrayOutputStream();
+            try (GZIPOutputStream output = new GZIPOutputStream(compressed)) {
+                output.write(CONTENT);
+            }
+            send(exchange, HttpURLConnection.HTTP_OK, compressed.toByteArray());
+        };
+
+        CachedFeed feed = this.feedFetcher.fetch(this.feedURL);
+
+        assertEquals("gzip, deflate", acceptEncoding.get());
+        assertArrayEquals(CONTENT, feed.getContent());
+    }
+
+    @Test
+    void deflateResponseIsDecoded() throws Exception
+    {
+        this.handler = exchange -> {
+            exchange.getResponseHeaders().set("Content-Encoding", "deflate");
+            ByteArrayOutputStream compressed = new ByteArrayOutputStream();
+            try (DeflaterOutputStream output = new DeflaterOutputStream(compressed)) {
+                output.write(CONTENT);
+            }
+            send(exchange, HttpURLConnection.HTTP_OK, compressed.toByteArray());
+        };
+
+        assertArrayEquals(CONTENT, this.feedFetcher.fetch(this.feedURL).getContent());
+    }
+
+    @Test
+    void errorStatusFails()
+    {
+        this.handler = exchange -> send(exchange, HttpURLConnection.HTTP_INTERNAL_ERROR, CONTENT);
+
+        IOException error = assertThrows(IOException.class, () -> this.feedFetcher.fetch(this.feedURL));
+
+        assertTrue(error.getMessage().contains("[500]"), error.getMessage());
+        verify(this.feedCache, never()).put(any());
+    }
+
+    @Test
+    void notModifiedReturnsTheCachedFeed() throws Exception
+    {
+        CachedFeed cachedFeed = new CachedFeed(this.feedURL.toExternalForm(), CONTENT, ETAG, null);
+        when(this.feedCache.get(this.feedURL.toExternalForm())).thenReturn(cachedFeed);
+        this.handler = exchange -> {
+            if (ETAG.equals(exchange.getRequestHeaders().getFirst("If-None-Match"))) {
+                send(exchange, HttpURLConnection.HTTP_NOT_MODIFIED, null);
+            } else {
+                send(exchange, HttpURLConnection.HTTP_OK, CONTENT);
+            }
+        };
+
+        assertSame(cachedFeed, this.feedFetcher.fetch(this.feedURL));
+    }
+
+    @Test
+    void notModifiedWithoutCachedFeedFails()
+    {
+        this.handler = exchange -> send(exchange, HttpURLConnection.HTTP_NOT_MODIFIED, null);
+
+        IOException error = assertThrows(IOException.class, () -> this.feedFetcher.fetch(this.feedURL));
+
+        assertTrue(error.getMessage().contains("[304]"), error.getMessage());
+    }
+
+    @Test
+    void stalledBodyFailsOnReadTimeout()
+    {
+        when(this.configuration.getFetchReadTimeout()).thenReturn(SHORT_TIMEOUT);
+        this.handler = this::sendStalledBody;
+
+        assertThrows(IOException.class, () -> this.feedFetcher.fetch(this.feedURL));
+    }
+
+    @Test
+    void stalledBodyFailsOnDeadline()
+    {
+        when(this.configuration.getFetchReadTimeout()).thenReturn(0);
+        when(this.configuration.getFetchDeadline()).thenReturn((long) SHORT_TIMEOUT);
+        this.handler = this::sendStalledBody;
+
+        IOException error = assertThrows(IOException.class, () -> this.feedFetcher.fetch(this.feedURL));
+
+        assertTrue(error.getMessage().contains("was not retrieved within"), error.getMessage());
+    }
+
+    /**
+     * Send the headers and the beginning of the feed, then wait for the end of the test.
+     */
+    private void sendStalledBody(HttpExchange exchange) throws IOException
+    {
+        exchange.sendResponseHeaders(HttpURLConnection.HTTP_OK, 0);
+        OutputStream body = exchange.getResponseBody();
+        body.write(CONTENT, 0, CONTENT.length / 2);
+        body.flush();
+        try {
+            this.serverRelease.await(LONG_TIMEOUT, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static void send(HttpExchange exchange, int statusCode, byte[] content) throws IOException
+    {
+        exchange.sendResponseHeaders(statusCode, content != null ? content.length : -1);
+        if (content != null) {
+            exchange.getResponseBody().write(content);
+        }
+    }
+}
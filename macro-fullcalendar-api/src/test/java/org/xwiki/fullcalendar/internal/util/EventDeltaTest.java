@@ -0,0 +1,156 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.fullcalendar.internal.util;
+
+import java.util.Set;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.xwiki.fullcalendar.internal.util.TestCalendars.parseEvents;
+
+/**
+ * Unit tests for {@link EventDelta}.
+ *
+ * @version $Id$
+ */
+class EventDeltaTest
+{
+    private static final String DTSTAMP = "DTSTAMP:20240101T080000Z";
+
+    @Test
+    void unchangedEventsAreMatchedAtTheirPreviousPosition() throws Exception
+    {
+        EventDelta delta = new EventDelta(parseEvents(event("a", 1), event("b", 1), event("c", 1)),
+            parseEvents(event("c", 1), event("a", 1), event("b", 1)));
+
+        assertEquals(2, delta.getPreviousPosition(0));
+        assertEquals(0, delta.getPreviousPosition(1));
+        assertEquals(1, delta.getPreviousPosition(2));
+        assertEquals(3, delta.getUnchangedCount());
+        assertEquals(0, delta.getChangedCount());
+        assertEquals(0, delta.getRemovedCount());
+        assertEquals(Set.of(), delta.getChangedUids());
+    }
+
+    @Test
+    void eventsWithAnotherSequenceAreChanged() throws Exception
+    {
+        EventDelta delta = new EventDelta(parseEvents(event("a", 1), event("b", 1)),
+            parseEvents(event("a", 2), event("b", 1)));
+
+        assertEquals(-1, delta.getPreviousPosition(0));
+        assertEquals(1, delta.getPreviousPosition(1));
+        assertEquals(1, delta.getUnchangedCount());
+        assertEquals(1, delta.getChangedCount());
+        assertEquals(0, delta.getRemovedCount());
+        assertEquals(Set.of("a"), delta.getChangedUids());
+    }
+
+    @Test
+    void eventsWithAnotherLastModifiedAreChanged() throws Exception
+    {
+        EventDelta delta = new EventDelta(parseEvents(event("a", 1) + "\nLAST-MODIFIED:20240101T090000Z"),
+            parseEvents(event("a", 1) + "\nLAST-MODIFIED:20240102T090000Z"));
+
+        assertEquals(-1, delta.getPreviousPosition(0));
+        assertEquals(Set.of("a"), delta.getChangedUids());
+    }
+
+    @Test
+    void eventsWithAnotherDtStampAreChanged() throws Exception
+    {
+        EventDelta delta = new EventDelta(parseEvents(event("a", 1)),
+            parseEvents(event("a", 1).replace(DTSTAMP, "DTSTAMP:20240102T080000Z")));
+
+        assertEquals(-1, delta.getPreviousPosition(0));
+        assertEquals(Set.of("a"), delta.getChangedUids());
+    }
+
+    @Test
+    void eventsWithoutVersionAreAlwaysChanged() throws Exception
+    {
+        String event = "UID:a\nDTSTART:20240101T100000";
+
+        EventDelta delta = new EventDelta(parseEvents(event), parseEvents(event));
+
+        assertEquals(-1, delta.getPreviousPosition(0));
+        assertEquals(0, delta.getUnchangedCount());
+        // Matched, but changed rather than removed.
+        assertEquals(0, delta.getRemovedCount());
+        assertEquals(Set.of("a"), delta.getChangedUids());
+    }
+
+    @Test
+    void modifiedInstancesAreMatchedByUidAndRecurrenceId() throws Exception
+    {
+        String override = event("a", 1) + "\nRECURRENCE-ID:20240102T100000";
+        String otherOverride = event("a", 1) + "\nRECURRENCE-ID:20240103T100000";
+
+        EventDelta delta = new EventDelta(parseEvents(event("a", 1), override),
+            parseEvents(override, event("a", 1), otherOverride));
+
+        assertEquals(1, delta.getPreviousPosition(0));
+        assertEquals(0, delta.getPreviousPosition(1));
+        assertEquals(-1, delta.getPreviousPosition(2));
+        assertEquals(2, delta.getUnchangedCount());
+        assertEquals(0, delta.getRemovedCount());
+        assertEquals(Set.of("a"), delta.getChangedUids());
+    }
+
+    @Test
+    void duplicateKeysAreNotMatched() throws Exception
+    {
+        EventDelta delta = new EventDelta(parseEvents(event("a", 1), event("a", 1)),
+            parseEvents(event("a", 1), event("a", 1)));
+
+        assertEquals(-1, delta.getPreviousPosition(0));
+        assertEquals(-1, delta.getPreviousPosition(1));
+        assertEquals(2, delta.getRemovedCount());
+        assertEquals(Set.of("a"), delta.getChangedUids());
+    }
+
+    @Test
+    void removedEvents() throws Exception
+    {
+        EventDelta delta = new EventDelta(parseEvents(event("a", 1), event("b", 1)), parseEvents(event("a", 1)));
+
+        assertEquals(0, delta.getPreviousPosition(0));
+        assertEquals(1, delta.getRemovedCount());
+        assertEquals(Set.of("b"), delta.getChangedUids());
+    }
+
+    @Test
+    void changesCannotBeTracedWithoutUid() throws Exception
+    {
+        EventDelta delta = new EventDelta(parseEvents(event("a", 1)),
+            parseEvents(event("a", 1), "SEQUENCE:1\n" + DTSTAMP + "\nDTSTART:20240101T100000"));
+
+        assertEquals(0, delta.getPreviousPosition(0));
+        assertEquals(-1, delta.getPreviousPosition(1));
+        assertNull(delta.getChangedUids());
+    }
+
+    private static String event(String uid, int sequence)
+    {
+        return String.join("\n", "UID:" + uid, "SEQUENCE:" + sequence, DTSTAMP, "DTSTART:20240101T100000");
+    }
+}
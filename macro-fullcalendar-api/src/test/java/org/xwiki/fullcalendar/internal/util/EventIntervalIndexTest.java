@@ -0,0 +1,155 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.fullcalendar.internal.util;
+
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.util.List;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import net.fortuna.ical4j.model.component.CalendarComponent;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.xwiki.fullcalendar.internal.util.TestCalendars.parseEvents;
+
+/**
+ * Unit tests for {@link EventIntervalIndex}.
+ *
+ * @version $Id$
+ */
+class EventIntervalIndexTest
+{
+    private static final ZoneId UTC = ZoneOffset.UTC;
+
+    private static final String FIRST = "UID:first\nSEQUENCE:1\nDTSTART:20240101T100000\nDTEND:20240101T110000";
+
+    private static final String SECOND = "UID:second\nSEQUENCE:1\nDTSTART:20240110T100000\nDTEND:20240110T110000";
+
+    private static final String CHANGED_FIRST =
+        "UID:first\nSEQUENCE:2\nDTSTART:20240201T100000\nDTEND:20240201T110000";
+
+    private final DateProcessor dateProcessor = new DateProcessor();
+
+    private List<CalendarComponent> previousEvents;
+
+    private EventIntervalIndex previousIndex;
+
+    @BeforeEach
+    void setUp() throws Exception
+    {
+        this.previousEvents = parseEvents(FIRST, SECOND);
+        this.previousIndex = new EventIntervalIndex(this.previousEvents, UTC, this.dateProcessor);
+    }
+
+    @Test
+    void getEvents() throws Exception
+    {
+        assertEquals(List.of(this.previousEvents.get(0)), this.previousIndex.getEvents(day(1), day(2)));
+        assertEquals(List.of(this.previousEvents.get(1)), this.previousIndex.getEvents(day(10), day(11)));
+        assertEquals(this.previousEvents, this.previousIndex.getEvents(day(1), day(11)));
+        assertEquals(List.of(), this.previousIndex.getEvents(day(2), day(9)));
+    }
+
+    @Test
+    void recurringEventsCoverTheSpanOfTheirRecurrence() throws Exception
+    {
+        List<CalendarComponent> events = parseEvents(FIRST,
+            "UID:weekly\nDTSTART:20240102T100000\nDTEND:20240102T110000\nRRULE:FREQ=WEEKLY;UNTIL=20240130T100000",
+            "UID:daily\nDTSTART:20240103T100000\nDTEND:20240103T110000\nRRULE:FREQ=DAILY;COUNT=3",
+            "UID:weekly\nRECURRENCE-ID:20240109T100000\nDTSTART:20240301T100000\nDTEND:20240301T110000");
+        EventIntervalIndex index = new EventIntervalIndex(events, UTC, this.dateProcessor);
+
+        // The modified instances are always returned, and the rules with a count are considered unbounded.
+        assertEquals(events.subList(1, 4), index.getEvents(day(20), day(21)));
+        assertEquals(events.subList(2, 4), index.getEvents(day(40), day(41)));
+        assertEquals(List.of(events.get(3)), index.getEvents(day(1) - 1, day(1)));
+    }
+
+    @Test
+    void eventsWithoutEndLastOneDay() throws Exception
+    {
+        List<CalendarComponent> events = parseEvents("UID:noEnd\nDTSTART:20240105T100000");
+        EventIntervalIndex index = new EventIntervalIndex(events, UTC, this.dateProcessor);
+
+        assertEquals(events, index.getEvents(day(6), day(7)));
+        assertEquals(List.of(), index.getEvents(day(7), day(8)));
+        assertEquals(1, index.size());
+    }
+
+    @Test
+    void unchangedEventsReuseTheSpanOfTheirPreviousPosition() throws Exception
+    {
+        List<CalendarComponent> events = parseEvents(SECOND, CHANGED_FIRST);
+        EventDelta delta = new EventDelta(this.previousEvents, events);
+        // Only the changed events are converted again, so a processor converting nothing leaves them out.
+        DateProcessor newDateProcessor = mock(DateProcessor.class);
+
+        EventIntervalIndex index = new EventIntervalIndex(events, UTC, newDateProcessor, this.previousIndex, delta);
+
+        assertEquals(List.of(events.get(0)), index.getEvents(day(10), day(11)));
+        assertEquals(List.of(), index.getEvents(day(1), day(2)));
+        verify(newDateProcessor, never()).toUtilDate(eq(LocalDateTime.of(2024, 1, 10, 10, 0)), any());
+        verify(newDateProcessor).toUtilDate(eq(LocalDateTime.of(2024, 2, 1, 10, 0)), any());
+    }
+
+    @Test
+    void changedEventsAreIndexedAgain() throws Exception
+    {
+        List<CalendarComponent> events = parseEvents(SECOND, CHANGED_FIRST);
+        EventDelta delta = new EventDelta(this.previousEvents, events);
+
+        EventIntervalIndex index =
+            new EventIntervalIndex(events, UTC, this.dateProcessor, this.previousIndex, delta);
+
+        assertEquals(List.of(events.get(1)), index.getEvents(day(32), day(33)));
+        assertEquals(List.of(), index.getEvents(day(1), day(2)));
+        assertEquals(events, index.getEvents(day(1), day(33)));
+    }
+
+    @Test
+    void spansAreNotReusedInAnotherTimeZone() throws Exception
+    {
+        List<CalendarComponent> events = parseEvents(SECOND, CHANGED_FIRST);
+        EventDelta delta = new EventDelta(this.previousEvents, events);
+        DateProcessor newDateProcessor = mock(DateProcessor.class);
+
+        EventIntervalIndex index = new EventIntervalIndex(events, ZoneId.of("Europe/Paris"), newDateProcessor,
+            this.previousIndex, delta);
+
+        assertEquals(List.of(), index.getEvents(day(10), day(11)));
+        verify(newDateProcessor).toUtilDate(eq(LocalDateTime.of(2024, 1, 10, 10, 0)), any());
+    }
+
+    /**
+     * @return the start of the given day of 2024, counted from January 1st, in milliseconds since the epoch
+     */
+    private static long day(int dayOfYear)
+    {
+        return LocalDateTime.of(2024, 1, 1, 0, 0).plusDays(dayOfYear - 1L).toInstant(ZoneOffset.UTC).toEpochMilli();
+    }
+}
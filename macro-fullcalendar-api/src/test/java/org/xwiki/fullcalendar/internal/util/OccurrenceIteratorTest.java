@@ -0,0 +1,191 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.fullcalendar.internal.util;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.time.ZonedDateTime;
+import java.time.temporal.Temporal;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+import net.fortuna.ical4j.model.Recur;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Unit tests for {@link OccurrenceIterator}.
+ *
+ * @version $Id$
+ */
+class OccurrenceIteratorTest
+{
+    private static final LocalDateTime SEED = LocalDateTime.of(2024, 1, 1, 12, 0);
+
+    /**
+     * The daily rules are expanded by chunks of 31 days, so the first chunk ends on an occurrence, January 31st at
+     * noon.
+     */
+    private static final LocalDateTime INTERVAL_START = LocalDateTime.of(2023, 12, 31, 12, 0);
+
+    private static final LocalDateTime INTERVAL_END = LocalDateTime.of(2024, 2, 15, 0, 0);
+
+    private static final LocalDateTime CHUNK_BOUNDARY = LocalDateTime.of(2024, 1, 31, 12, 0);
+
+    private static final int MAX_COUNT = 1000;
+
+    @Test
+    void occurrencesAreReturnedOnceAcrossChunks() throws Exception
+    {
+        List<Temporal> occurrences = expand("FREQ=DAILY", List.of(), List.of(), MAX_COUNT, null);
+
+        // From January 1st to February 14th.
+        assertEquals(45, occurrences.size());
+        assertEquals(SEED, occurrences.get(0));
+        assertEquals(LocalDateTime.of(2024, 2, 14, 12, 0), occurrences.get(44));
+        assertEquals(1, occurrences.stream().filter(CHUNK_BOUNDARY::equals).count());
+        assertChronological(occurrences);
+    }
+
+    @Test
+    void excludedAndAdditionalDatesAreMergedAcrossChunks() throws Exception
+    {
+        LocalDateTime excludedDate = LocalDateTime.of(2024, 1, 10, 12, 0);
+        LocalDateTime additionalDate = LocalDateTime.of(2024, 1, 5, 18, 0);
+        LocalDateTime lateAdditionalDate = LocalDateTime.of(2024, 2, 3, 18, 0);
+        LocalDateTime outOfIntervalDate = LocalDateTime.of(2024, 3, 1, 12, 0);
+
+        List<Temporal> occurrences = expand("FREQ=DAILY", List.of(excludedDate, CHUNK_BOUNDARY),
+            List.of(lateAdditionalDate, additionalDate, CHUNK_BOUNDARY, SEED, outOfIntervalDate), MAX_COUNT, null);
+
+        // The dates that are both in the rule and in RDATE are returned once, and EXDATE wins over RDATE.
+        assertEquals(45 - 2 + 2, occurrences.size());
+        assertFalse(occurrences.contains(excludedDate));
+        assertFalse(occurrences.contains(CHUNK_BOUNDARY));
+        assertFalse(occurrences.contains(outOfIntervalDate));
+        assertTrue(occurrences.contains(additionalDate));
+        assertTrue(occurrences.contains(lateAdditionalDate));
+        assertEquals(1, occurrences.stream().filter(SEED::equals).count());
+        assertChronological(occurrences);
+    }
+
+    @Test
+    void rulesWithIntervalStayAlignedAcrossChunks() throws Exception
+    {
+        List<Temporal> occurrences = expand("FREQ=DAILY;INTERVAL=3", List.of(), List.of(), MAX_COUNT, null);
+
+        assertEquals(15, occurrences.size());
+        for (int i = 0; i < occurrences.size(); i++) {
+            assertEquals(SEED.plusDays(3L * i), occurrences.get(i));
+        }
+    }
+
+    @Test
+    void countedRulesStopAfterTheirCount() throws Exception
+    {
+        List<Temporal> occurrences = expand("FREQ=DAILY;COUNT=40", List.of(), List.of(), MAX_COUNT, null);
+
+        assertEquals(40, occurrences.size());
+        assertEquals(SEED.plusDays(39), occurrences.get(39));
+    }
+
+    @Test
+    void iterationStopsAtTheMaximumCount() throws Exception
+    {
+        List<OccurrenceIterator> iterators = new ArrayList<>();
+
+        List<Temporal> occurrences = expand("FREQ=DAILY", List.of(), List.of(), 3, iterators);
+
+        assertEquals(List.of(SEED, SEED.plusDays(1), SEED.plusDays(2)), occurrences);
+        assertTrue(iterators.get(0).isTruncated());
+    }
+
+    @Test
+    void excludedDatesDoNotUseUpTheMaximumCount() throws Exception
+    {
+        List<OccurrenceIterator> iterators = new ArrayList<>();
+
+        List<Temporal> occurrences =
+            expand("FREQ=DAILY", List.of(SEED, SEED.plusDays(1), SEED.plusDays(2)), List.of(), 1, iterators);
+
+        // The first occurrence that is not excluded, even though the rule was asked for 2 dates at a time.
+        assertEquals(List.of(SEED.plusDays(3)), occurrences);
+        assertTrue(iterators.get(0).isTruncated());
+    }
+
+    @Test
+    void zonedOccurrencesKeepTheirTimeAfterADaylightSavingGap() throws Exception
+    {
+        // 02:30 doesn't exist in Paris on March 31st 2024, which is the last day of the first chunk of the interval.
+        ZoneId zoneId = ZoneId.of("Europe/Paris");
+        LocalTime time = LocalTime.of(2, 30);
+        ZonedDateTime seed = ZonedDateTime.of(LocalDate.of(2024, 1, 1), time, zoneId);
+        LocalDate gapDay = LocalDate.of(2024, 3, 31);
+        OccurrenceIterator iterator = new OccurrenceIterator(new Recur<>("FREQ=DAILY"), seed,
+            LocalDateTime.of(2024, 3, 1, 0, 0), LocalDateTime.of(2024, 6, 1, 0, 0), List.of(), List.of(), MAX_COUNT,
+            date -> date instanceof ZonedDateTime ? ((ZonedDateTime) date).toInstant().toEpochMilli()
+                : ((LocalDateTime) date).atZone(zoneId).toInstant().toEpochMilli());
+        List<Temporal> occurrences = new ArrayList<>();
+        iterator.forEachRemaining(occurrences::add);
+
+        List<LocalDate> days = new ArrayList<>();
+        for (Temporal occurrence : occurrences) {
+            ZonedDateTime zonedOccurrence = ((ZonedDateTime) occurrence).withZoneSameInstant(zoneId);
+            days.add(zonedOccurrence.toLocalDate());
+            if (!gapDay.equals(zonedOccurrence.toLocalDate())) {
+                assertEquals(time, zonedOccurrence.toLocalTime(), "Shifted occurrence: " + zonedOccurrence);
+            }
+        }
+        // Every day from March 1st to May 31st, except maybe the day of the gap.
+        assertTrue(days.contains(LocalDate.of(2024, 3, 30)));
+        assertTrue(days.contains(LocalDate.of(2024, 4, 1)));
+        assertTrue(days.contains(LocalDate.of(2024, 5, 31)));
+        assertEquals(days.size(), days.stream().distinct().count());
+        assertTrue(days.size() >= 92 - 1);
+    }
+
+    private static List<Temporal> expand(String rule, List<Temporal> exDates, List<Temporal> rDates, int maxCount,
+        List<OccurrenceIterator> iterators) throws Exception
+    {
+        Recur<Temporal> recur = new Recur<>(rule);
+        OccurrenceIterator iterator = new OccurrenceIterator(recur, SEED, INTERVAL_START, INTERVAL_END, exDates,
+            rDates, maxCount, date -> ((LocalDateTime) date).toInstant(ZoneOffset.UTC).toEpochMilli());
+        if (iterators != null) {
+            iterators.add(iterator);
+        }
+        List<Temporal> occurrences = new ArrayList<>();
+        iterator.forEachRemaining(occurrences::add);
+        return occurrences;
+    }
+
+    private static void assertChronological(List<Temporal> occurrences)
+    {
+        for (int i = 1; i < occurrences.size(); i++) {
+            assertTrue(((LocalDateTime) occurrences.get(i - 1)).isBefore((LocalDateTime) occurrences.get(i)));
+        }
+    }
+}
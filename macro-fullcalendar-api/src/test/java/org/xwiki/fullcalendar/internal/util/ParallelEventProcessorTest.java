@@ -0,0 +1,104 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.fullcalendar.internal.util;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.BiConsumer;
+
+import org.junit.jupiter.api.Test;
+import org.xwiki.fullcalendar.internal.FullCalendarConfiguration;
+import org.xwiki.test.annotation.BeforeComponent;
+import org.xwiki.test.junit5.mockito.ComponentTest;
+import org.xwiki.test.junit5.mockito.InjectMockComponents;
+import org.xwiki.test.junit5.mockito.MockComponent;
+
+import net.fortuna.ical4j.model.Property;
+import net.fortuna.ical4j.model.component.CalendarComponent;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.when;
+
+/**
+ * Unit tests for {@link ParallelEventProcessor}.
+ *
+ * @version $Id$
+ */
+@ComponentTest
+class ParallelEventProcessorTest
+{
+    private static final int THREADS = 4;
+
+    private static final int MIN_EVENTS = 10;
+
+    private static final int EVENT_COUNT = 100;
+
+    @InjectMockComponents
+    private ParallelEventProcessor parallelEventProcessor;
+
+    @MockComponent
+    private FullCalendarConfiguration configuration;
+
+    @BeforeComponent
+    void configure()
+    {
+        when(this.configuration.getParallelThreads()).thenReturn(THREADS);
+        when(this.configuration.getParallelMinEvents()).thenReturn(MIN_EVENTS);
+    }
+
+    @Test
+    void resultsAreTheSameAsWithASequentialProcessing() throws Exception
+    {
+        String[] events = new String[EVENT_COUNT];
+        for (int i = 0; i < EVENT_COUNT; i++) {
+            events[i] = String.format("UID:event-%d%nDTSTART:20240101T%02d0000Z", i, i % 24);
+        }
+        List<CalendarComponent> calendarEvents = TestCalendars.parseEvents(events);
+        // Several results per event, so that the results of an event must also stay together.
+        BiConsumer<CalendarComponent, List<String>> processor = (event, results) -> {
+            String uid = event.getProperty(Property.UID).get().getValue();
+            results.add(uid + "/start");
+            results.add(uid + "/end");
+        };
+
+        List<String> expected = new ArrayList<>();
+        for (CalendarComponent event : calendarEvents) {
+            processor.accept(event, expected);
+        }
+
+        assertEquals(expected, this.parallelEventProcessor.process(calendarEvents, processor));
+    }
+
+    @Test
+    void noEvents()
+    {
+        assertEquals(List.of(), this.parallelEventProcessor.process(List.of(), (event, results) -> results.add(event)));
+    }
+
+    @Test
+    void onlyLargeCalendarsAreProcessedInParallel()
+    {
+        assertFalse(this.parallelEventProcessor.isParallel(MIN_EVENTS - 1));
+        assertTrue(this.parallelEventProcessor.isParallel(MIN_EVENTS));
+        assertEquals(MIN_EVENTS * THREADS, this.parallelEventProcessor.getBatchSize());
+    }
+}
@@ -0,0 +1,103 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.fullcalendar.internal.util;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Unit tests for {@link SizeBoundedLruMap}.
+ *
+ * @version $Id$
+ */
+class SizeBoundedLruMapTest
+{
+    private static final long MAX_SIZE = 10;
+
+    private final SizeBoundedLruMap<byte[]> map = new SizeBoundedLruMap<>(value -> value.length);
+
+    @Test
+    void leastRecentlyUsedEntriesAreEvictedOnceTheSizeIsExceeded()
+    {
+        assertTrue(this.map.put("a", new byte[4], MAX_SIZE));
+        assertTrue(this.map.put("b", new byte[4], MAX_SIZE));
+        // Make "a" the most recently used entry.
+        this.map.get("a");
+        assertTrue(this.map.put("c", new byte[4], MAX_SIZE));
+
+        assertNull(this.map.get("b"));
+        assertEquals(4, this.map.get("a").length);
+        assertEquals(4, this.map.get("c").length);
+        assertEquals(8, this.map.getTotalSize());
+    }
+
+    @Test
+    void severalEntriesCanBeEvictedForALargeValue()
+    {
+        this.map.put("a", new byte[3], MAX_SIZE);
+        this.map.put("b", new byte[3], MAX_SIZE);
+        this.map.put("c", new byte[3], MAX_SIZE);
+
+        assertTrue(this.map.put("d", new byte[8], MAX_SIZE));
+
+        assertNull(this.map.get("a"));
+        assertNull(this.map.get("b"));
+        assertNull(this.map.get("c"));
+        assertEquals(8, this.map.getTotalSize());
+    }
+
+    @Test
+    void replacingAValueUpdatesTheSize()
+    {
+        this.map.put("a", new byte[4], MAX_SIZE);
+        this.map.put("a", new byte[6], MAX_SIZE);
+
+        assertEquals(6, this.map.getTotalSize());
+        assertEquals(6, this.map.get("a").length);
+    }
+
+    @Test
+    void valuesLargerThanTheMaximumSizeAreRejected()
+    {
+        this.map.put("a", new byte[4], MAX_SIZE);
+        this.map.put("b", new byte[4], MAX_SIZE);
+
+        assertFalse(this.map.put("a", new byte[11], MAX_SIZE));
+
+        // The previous value is dropped, it is outdated, but the other entries are kept.
+        assertNull(this.map.get("a"));
+        assertEquals(4, this.map.get("b").length);
+        assertEquals(4, this.map.getTotalSize());
+    }
+
+    @Test
+    void remove()
+    {
+        this.map.put("a", new byte[4], MAX_SIZE);
+
+        assertEquals(4, this.map.remove("a").length);
+        assertNull(this.map.remove("a"));
+        assertEquals(0, this.map.getTotalSize());
+    }
+}
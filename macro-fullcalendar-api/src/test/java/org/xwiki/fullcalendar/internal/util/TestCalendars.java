@@ -0,0 +1,62 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.fullcalendar.internal.util;
+
+import java.io.StringReader;
+import java.util.List;
+
+import net.fortuna.ical4j.data.CalendarBuilder;
+import net.fortuna.ical4j.model.Component;
+import net.fortuna.ical4j.model.component.CalendarComponent;
+
+/**
+ * Builds the events used by the tests from their iCal properties.
+ *
+ * @version $Id$
+ */
+final class TestCalendars
+{
+    private static final String CRLF = "\r\n";
+
+    private TestCalendars()
+    {
+    }
+
+    /**
+     * @param events the properties of each event, one per line
+     * @return the parsed events, in the given order
+     * @throws Exception if the events cannot be parsed
+     */
+    static List<CalendarComponent> parseEvents(String... events) throws Exception
+    {
+        StringBuilder calendar = new StringBuilder();
+        calendar.append("BEGIN:VCALENDAR").append(CRLF).append("VERSION:2.0").append(CRLF)
+            .append("PRODID:-//XWiki//Full Calendar Macro Tests//EN").append(CRLF);
+        for (String event : events) {
+            calendar.append("BEGIN:VEVENT").append(CRLF);
+            for (String line : event.split("\n")) {
+                calendar.append(line).append(CRLF);
+            }
+            calendar.append("END:VEVENT").append(CRLF);
+        }
+        calendar.append("END:VCALENDAR").append(CRLF);
+        return new CalendarBuilder().build(new StringReader(calendar.toString())).getComponents(Component.VEVENT);
+    }
+}
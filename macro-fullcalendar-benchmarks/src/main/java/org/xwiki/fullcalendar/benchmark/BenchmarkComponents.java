@@ -0,0 +1,106 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.fullcalendar.benchmark;
+
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.xwiki.component.annotation.ComponentAnnotationLoader;
+import org.xwiki.component.embed.EmbeddableComponentManager;
+import org.xwiki.configuration.ConfigurationSource;
+import org.xwiki.fullcalendar.internal.DefaultFullCalendarManager;
+import org.xwiki.fullcalendar.internal.FeedEventsProcessor;
+import org.xwiki.fullcalendar.internal.FeedEventsWriter;
+import org.xwiki.fullcalendar.internal.FullCalendarConfiguration;
+import org.xwiki.fullcalendar.internal.MergedFeedEventsWriter;
+import org.xwiki.fullcalendar.internal.feed.FeedCache;
+import org.xwiki.fullcalendar.internal.feed.FeedFetcher;
+import org.xwiki.fullcalendar.internal.feed.FeedLoadExecutor;
+import org.xwiki.fullcalendar.internal.feed.FeedRefreshScheduler;
+import org.xwiki.fullcalendar.internal.feed.FeedSnapshotCache;
+import org.xwiki.fullcalendar.internal.feed.FeedSnapshotFactory;
+import org.xwiki.fullcalendar.internal.feed.FeedSnapshotProvider;
+import org.xwiki.fullcalendar.internal.feed.FeedStore;
+import org.xwiki.fullcalendar.internal.metrics.FeedMetricsRegistry;
+import org.xwiki.fullcalendar.internal.util.CalendarEventsBuilder;
+import org.xwiki.fullcalendar.internal.util.DateProcessor;
+import org.xwiki.fullcalendar.internal.util.EventProcessor;
+import org.xwiki.fullcalendar.internal.util.ParallelEventProcessor;
+import org.xwiki.fullcalendar.internal.util.RecurrenceProcessor;
+
+/**
+ * Sets up the components of the Full Calendar Macro outside of XWiki, with an in-memory configuration.
+ *
+ * @version $Id$
+ * @since 2.5.5
+ */
+public final class BenchmarkComponents
+{
+    /**
+     * The components needed to read the calendars, i.e. all the components of the API module but the script
+     * service, which needs a running wiki.
+     */
+    private static final List<String> COMPONENTS = List.of(DefaultFullCalendarManager.class.getName(),
+        FeedEventsProcessor.class.getName(), FeedEventsWriter.class.getName(),
+        MergedFeedEventsWriter.class.getName(), FullCalendarConfiguration.class.getName(),
+        DateProcessor.class.getName(), EventProcessor.class.getName(), RecurrenceProcessor.class.getName(),
+        CalendarEventsBuilder.class.getName(), ParallelEventProcessor.class.getName(), FeedCache.class.getName(),
+        FeedFetcher.class.getName(), FeedSnapshotCache.class.getName(), FeedSnapshotFactory.class.getName(),
+        FeedSnapshotProvider.class.getName(), FeedRefreshScheduler.class.getName(), FeedLoadExecutor.class.getName(),
+        FeedMetricsRegistry.class.getName(), FeedStore.class.getName());
+
+    /**
+     * The feed store needs the permanent directory of XWiki, so it is disabled unless explicitly configured.
+     */
+    private static final String PERSISTENCE_ENABLED = "fullcalendar.persistence.enabled";
+
+    private BenchmarkComponents()
+    {
+    }
+
+    /**
+     * @param configuration the configuration properties, as they would be set in {@code xwiki.properties}
+     * @return a component manager holding the components of the Full Calendar Macro
+     */
+    public static EmbeddableComponentManager createComponentManager(Map<String, Object> configuration)
+    {
+        Map<String, Object> properties = new HashMap<>(configuration);
+        properties.putIfAbsent(PERSISTENCE_ENABLED, false);
+        EmbeddableComponentManager componentManager = new EmbeddableComponentManager();
+        componentManager.registerComponent(ConfigurationSource.class, "xwikiproperties",
+            new BenchmarkConfigurationSource(properties));
+        new ComponentAnnotationLoader().initialize(componentManager, BenchmarkComponents.class.getClassLoader(),
+            COMPONENTS);
+        return componentManager;
+    }
+
+    /**
+     * @param day a day
+     * @return the start of the day, in the time zone of the generated calendars
+     */
+    public static Date toDate(LocalDate day)
+    {
+        return Date.from(day.atStartOfDay(ZoneId.of(SyntheticCalendarGenerator.TIME_ZONE)).toInstant());
+    }
+}
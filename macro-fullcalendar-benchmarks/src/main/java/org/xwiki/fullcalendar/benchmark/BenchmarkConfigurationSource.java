@@ -0,0 +1,105 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.fullcalendar.benchmark;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import org.xwiki.configuration.ConfigurationSource;
+
+/**
+ * In-memory configuration standing in for {@code xwiki.properties}. The values given as strings, e.g. on the command
+ * line, are converted to the type of the requested default value.
+ *
+ * @version $Id$
+ * @since 2.5.5
+ */
+public class BenchmarkConfigurationSource implements ConfigurationSource
+{
+    private final Map<String, Object> properties;
+
+    /**
+     * @param properties the configuration properties
+     */
+    public BenchmarkConfigurationSource(Map<String, Object> properties)
+    {
+        this.properties = properties;
+    }
+
+    @Override
+    public <T> T getProperty(String key, T defaultValue)
+    {
+        Object value = this.properties.get(key);
+        if (value == null || defaultValue == null) {
+            return value == null ? defaultValue : (T) value;
+        }
+        return (T) convert(value, defaultValue.getClass());
+    }
+
+    @Override
+    public <T> T getProperty(String key, Class<T> valueClass)
+    {
+        Object value = this.properties.get(key);
+        return value == null ? null : (T) convert(value, valueClass);
+    }
+
+    @Override
+    public <T> T getProperty(String key)
+    {
+        return (T) this.properties.get(key);
+    }
+
+    @Override
+    public List<String> getKeys()
+    {
+        return new ArrayList<>(this.properties.keySet());
+    }
+
+    @Override
+    public boolean containsKey(String key)
+    {
+        return this.properties.containsKey(key);
+    }
+
+    @Override
+    public boolean isEmpty()
+    {
+        return this.properties.isEmpty();
+    }
+
+    private Object convert(Object value, Class<?> valueClass)
+    {
+        if (valueClass.isInstance(value)) {
+            return value;
+        }
+        String stringValue = value.toString();
+        if (valueClass == Integer.class) {
+            return Integer.valueOf(stringValue);
+        } else if (valueClass == Long.class) {
+            return Long.valueOf(stringValue);
+        } else if (valueClass == Double.class) {
+            return Double.valueOf(stringValue);
+        } else if (valueClass == Boolean.class) {
+            return Boolean.valueOf(stringValue);
+        }
+        return stringValue;
+    }
+}
@@ -0,0 +1,139 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.fullcalendar.benchmark;
+
+import java.io.Writer;
+import java.net.URL;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.xwiki.component.embed.EmbeddableComponentManager;
+import org.xwiki.fullcalendar.FullCalendarManager;
+import org.xwiki.fullcalendar.model.CalendarEvent;
+
+/**
+ * Measures the computation of the events displayed for a month, with the recurring events collapsed or expanded.
+ * The feed benchmark reads the calendar from a local file URL, so after the first call it measures the expansion
+ * and serialization of the cached feed; the file benchmark includes the parsing of the calendar.
+ *
+ * @version $Id$
+ * @since 2.5.5
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Fork(value = 1, jvmArgsAppend = "-Xmx8g")
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+public class CalendarEventsBenchmark
+{
+    @Param({ "1000", "10000", "100000", "1000000" })
+    private int eventCount;
+
+    @Param({ "true", "false" })
+    private boolean collapse;
+
+    private EmbeddableComponentManager componentManager;
+
+    private FullCalendarManager manager;
+
+    private byte[] calendar;
+
+    private Path calendarFile;
+
+    private URL calendarURL;
+
+    private Date monthStart;
+
+    private Date monthEnd;
+
+    /**
+     * Generate the calendar and set up the components.
+     *
+     * @throws Exception if the calendar cannot be written or the components cannot be looked up
+     */
+    @Setup(Level.Trial)
+    public void setUp() throws Exception
+    {
+        this.calendar = SyntheticCalendarGenerator.generate(this.eventCount);
+        this.calendarFile = Files.createTempFile("calendar", ".ics");
+        Files.write(this.calendarFile, this.calendar);
+        this.calendarURL = this.calendarFile.toUri().toURL();
+
+        LocalDate month = SyntheticCalendarGenerator.FIRST_DAY.plusYears(2).withMonth(6);
+        this.monthStart = BenchmarkComponents.toDate(month);
+        this.monthEnd = BenchmarkComponents.toDate(month.plusMonths(1));
+
+        this.componentManager = BenchmarkComponents.createComponentManager(Collections.emptyMap());
+        this.manager = this.componentManager.getInstance(FullCalendarManager.class);
+    }
+
+    /**
+     * Dispose the components and delete the calendar.
+     *
+     * @throws Exception if the calendar file cannot be deleted
+     */
+    @TearDown(Level.Trial)
+    public void tearDown() throws Exception
+    {
+        this.componentManager.dispose();
+        Files.deleteIfExists(this.calendarFile);
+    }
+
+    /**
+     * Compute and serialize the events of a month from a cached feed.
+     *
+     * @throws Exception if the events cannot be computed
+     */
+    @Benchmark
+    public void writeFeedMonth() throws Exception
+    {
+        this.manager.writeICalEvents(this.calendarURL, this.monthStart, this.monthEnd, this.collapse,
+            Writer.nullWriter());
+    }
+
+    /**
+     * @return the events of a month read from an uploaded file
+     * @throws Exception if the events cannot be computed
+     */
+    @Benchmark
+    public List<CalendarEvent> getFileMonth() throws Exception
+    {
+        return this.manager.getICalEventsFromFile(this.calendar, this.monthStart, this.monthEnd, this.collapse);
+    }
+}
@@ -0,0 +1,101 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.fullcalendar.benchmark;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.xwiki.fullcalendar.internal.util.CalendarReader;
+
+import net.fortuna.ical4j.model.component.CalendarComponent;
+
+/**
+ * Measures the parsing of whole calendars, and of the events of a single month.
+ *
+ * @version $Id$
+ * @since 2.5.5
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Fork(value = 1, jvmArgsAppend = "-Xmx8g")
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+public class CalendarParsingBenchmark
+{
+    @Param({ "1000", "10000", "100000", "1000000" })
+    private int eventCount;
+
+    private byte[] calendar;
+
+    private Date monthStart;
+
+    private Date monthEnd;
+
+    /**
+     * Generate the calendar.
+     */
+    @Setup(Level.Trial)
+    public void setUp()
+    {
+        this.calendar = SyntheticCalendarGenerator.generate(this.eventCount);
+        LocalDate month = SyntheticCalendarGenerator.FIRST_DAY.plusYears(2).withMonth(6);
+        this.monthStart = BenchmarkComponents.toDate(month);
+        this.monthEnd = BenchmarkComponents.toDate(month.plusMonths(1));
+    }
+
+    /**
+     * @return the events of the calendar
+     * @throws Exception if the calendar cannot be parsed
+     */
+    @Benchmark
+    public List<CalendarComponent> parseCalendar() throws Exception
+    {
+        return new CalendarReader(new ByteArrayInputStream(this.calendar)).getEvents();
+    }
+
+    /**
+     * @return the events of the calendar that can occur in a month
+     * @throws Exception if the calendar cannot be parsed
+     */
+    @Benchmark
+    public List<CalendarComponent> parseMonth() throws Exception
+    {
+        return new CalendarReader(new InputStreamReader(new ByteArrayInputStream(this.calendar),
+            StandardCharsets.UTF_8), this.monthStart, this.monthEnd).getEvents();
+    }
+}
@@ -0,0 +1,123 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.fullcalendar.benchmark;
+
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.Collections;
+import java.util.Date;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.xwiki.component.embed.EmbeddableComponentManager;
+import org.xwiki.fullcalendar.internal.util.DateProcessor;
+
+/**
+ * Measures the date conversions done for each event and each instance of a recurring event.
+ *
+ * @version $Id$
+ * @since 2.5.5
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Fork(1)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+public class DateProcessorBenchmark
+{
+    private static final ZoneId ZONE_ID = ZoneId.of(SyntheticCalendarGenerator.TIME_ZONE);
+
+    @Param({ "LocalDate", "LocalDateTime", "ZonedDateTime", "Date" })
+    private String dateType;
+
+    private EmbeddableComponentManager componentManager;
+
+    private DateProcessor dateProcessor;
+
+    private Object date;
+
+    /**
+     * Set up the components and the date to convert.
+     *
+     * @throws Exception if the components cannot be looked up
+     */
+    @Setup(Level.Trial)
+    public void setUp() throws Exception
+    {
+        this.componentManager = BenchmarkComponents.createComponentManager(Collections.emptyMap());
+        this.dateProcessor = this.componentManager.getInstance(DateProcessor.class);
+
+        LocalDateTime dateTime = SyntheticCalendarGenerator.FIRST_DAY.atTime(10, 30);
+        switch (this.dateType) {
+            case "LocalDate":
+                this.date = dateTime.toLocalDate();
+                break;
+            case "LocalDateTime":
+                this.date = dateTime;
+                break;
+            case "ZonedDateTime":
+                this.date = dateTime.atZone(ZONE_ID);
+                break;
+            default:
+                this.date = Date.from(dateTime.atZone(ZONE_ID).toInstant());
+                break;
+        }
+    }
+
+    /**
+     * Dispose the components.
+     */
+    @TearDown(Level.Trial)
+    public void tearDown()
+    {
+        this.componentManager.dispose();
+    }
+
+    /**
+     * @return the converted date
+     */
+    @Benchmark
+    public Date toUtilDate()
+    {
+        return this.dateProcessor.toUtilDate(this.date, ZONE_ID);
+    }
+
+    /**
+     * @return the converted date
+     */
+    @Benchmark
+    public LocalDateTime toLocalDateTime()
+    {
+        return this.dateProcessor.toLocalDateTime(this.date, ZONE_ID);
+    }
+}
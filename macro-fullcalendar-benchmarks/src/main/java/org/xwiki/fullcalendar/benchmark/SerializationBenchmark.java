@@ -0,0 +1,127 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.fullcalendar.benchmark;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.xwiki.component.embed.EmbeddableComponentManager;
+import org.xwiki.fullcalendar.FullCalendarManager;
+import org.xwiki.fullcalendar.model.CalendarEvent;
+import org.xwiki.fullcalendar.model.CustomDateSerializer;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+/**
+ * Measures the serialization to JSON of the expanded events of a year, and of their dates alone.
+ *
+ * @version $Id$
+ * @since 2.5.5
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Fork(value = 1, jvmArgsAppend = "-Xmx8g")
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+public class SerializationBenchmark
+{
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+
+    @Param({ "1000", "10000", "100000", "1000000" })
+    private int eventCount;
+
+    private List<CalendarEvent> events;
+
+    private List<Date> dates;
+
+    /**
+     * Compute the events to serialize.
+     *
+     * @throws Exception if the events cannot be computed
+     */
+    @Setup(Level.Trial)
+    public void setUp() throws Exception
+    {
+        EmbeddableComponentManager componentManager =
+            BenchmarkComponents.createComponentManager(Collections.emptyMap());
+        try {
+            LocalDate year = SyntheticCalendarGenerator.FIRST_DAY.plusYears(2);
+            this.events = componentManager.<FullCalendarManager>getInstance(FullCalendarManager.class)
+                .getICalEventsFromFile(SyntheticCalendarGenerator.generate(this.eventCount),
+                    BenchmarkComponents.toDate(year), BenchmarkComponents.toDate(year.plusYears(1)), false);
+        } finally {
+            componentManager.dispose();
+        }
+        this.dates = new ArrayList<>(2 * this.events.size());
+        for (CalendarEvent event : this.events) {
+            this.dates.add(event.getStart());
+            this.dates.add(event.getEnd());
+        }
+    }
+
+    /**
+     * Serialize the events like the JSON service does.
+     *
+     * @throws IOException if the serialization fails
+     */
+    @Benchmark
+    public void writeEvents() throws IOException
+    {
+        MAPPER.writeValue(Writer.nullWriter(), this.events);
+    }
+
+    /**
+     * Serialize the dates of the events with {@link CustomDateSerializer}.
+     *
+     * @throws IOException if the serialization fails
+     */
+    @Benchmark
+    public void writeDates() throws IOException
+    {
+        CustomDateSerializer serializer = new CustomDateSerializer();
+        try (JsonGenerator generator = MAPPER.getFactory().createGenerator(Writer.nullWriter())) {
+            generator.writeStartArray();
+            for (Date date : this.dates) {
+                serializer.serialize(date, generator, null);
+            }
+            generator.writeEndArray();
+        }
+    }
+}
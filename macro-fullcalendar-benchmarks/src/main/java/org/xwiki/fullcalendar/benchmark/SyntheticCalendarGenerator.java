@@ -0,0 +1,274 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.fullcalendar.benchmark;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Generates iCal calendars with a mix of events close to the one of real feeds: mostly single events, some of them
+ * lasting all day, and recurring events with different frequencies and bounds, excluded dates and modified
+ * instances. The events can be spread over several time zones and carry long descriptions, which are folded like in
+ * real feeds. The generation is deterministic, so that the results of different runs can be compared.
+ *
+ * @version $Id$
+ * @since 2.5.5
+ */
+public class SyntheticCalendarGenerator
+{
+    /**
+     * The first day of the generated events.
+     */
+    public static final LocalDate FIRST_DAY = LocalDate.of(2024, 1, 1);
+
+    /**
+     * The number of days over which the events are spread.
+     */
+    public static final int DAY_SPAN = 5 * 365;
+
+    /**
+     * The time zone of the generated calendar.
+     */
+    public static final String TIME_ZONE = "Europe/Paris";
+
+    private static final String CRLF = "\r\n";
+
+    private static final String FOLDING = "\r\n ";
+
+    private static final int MAX_LINE_LENGTH = 75;
+
+    private static final String DESCRIPTION_TEXT = "Agenda: review the action items of the previous meeting, go "
+        + "through the status of each work package, discuss the risks and agree on the next steps. ";
+
+    private static final String DTSTART = "DTSTART";
+
+    private static final String DTEND = "DTEND";
+
+    private static final String RRULE = "RRULE:FREQ=";
+
+    private static final String TZID_PARAMETER = ";TZID=";
+
+    private static final String DATE_PARAMETER = ";VALUE=DATE:";
+
+    private static final DateTimeFormatter DATE_TIME_FORMAT = DateTimeFormatter.ofPattern("yyyyMMdd'T'HHmmss");
+
+    private static final DateTimeFormatter DATE_FORMAT = DateTimeFormatter.BASIC_ISO_DATE;
+
+    private static final long DEFAULT_SEED = 42;
+
+    private static final int PERCENT = 100;
+
+    private static final int WORKING_HOURS_START = 8;
+
+    private static final int WORKING_HOURS = 10;
+
+    private static final int MINUTES_STEP = 15;
+
+    private static final int STEPS_PER_HOUR = 4;
+
+    private static final int MAX_DURATION_STEPS = 12;
+
+    private static final int MAX_COUNT = 100;
+
+    private static final int MAX_UNTIL_DAYS = 365;
+
+    private static final int TIMED_EVENTS = 60;
+
+    private static final int ALL_DAY_EVENTS = 70;
+
+    private static final int WEEKLY_EVENTS = 82;
+
+    private static final int DAILY_EVENTS = 90;
+
+    private static final int MONTHLY_EVENTS = 95;
+
+    private final Random random;
+
+    private final List<String> timeZones;
+
+    private final int descriptionLength;
+
+    private final StringBuilder content = new StringBuilder();
+
+    private String lastWeeklyUid;
+
+    private LocalDateTime lastWeeklyStart;
+
+    private String lastWeeklyTimeZone;
+
+    /**
+     * @param seed the seed of the random choices, different seeds producing different calendars
+     * @param timeZones the time zones of the events, the first one being the time zone of the calendar
+     * @param descriptionLength the minimum length of the event descriptions
+     */
+    public SyntheticCalendarGenerator(long seed, List<String> timeZones, int descriptionLength)
+    {
+        this.random = new Random(seed);
+        this.timeZones = timeZones;
+        this.descriptionLength = descriptionLength;
+    }
+
+    /**
+     * Generate a calendar with all the events in {@link #TIME_ZONE} and short descriptions.
+     *
+     * @param eventCount the number of events of the calendar
+     * @return the calendar, encoded in UTF-8
+     */
+    public static byte[] generate(int eventCount)
+    {
+        return new SyntheticCalendarGenerator(DEFAULT_SEED, List.of(TIME_ZONE), 0).generateCalendar(eventCount);
+    }
+
+    /**
+     * Generate a calendar.
+     *
+     * @param eventCount the number of events of the calendar
+     * @return the calendar, encoded in UTF-8
+     */
+    public byte[] generateCalendar(int eventCount)
+    {
+        this.content.setLength(0);
+        line("BEGIN:VCALENDAR");
+        line("VERSION:2.0");
+        line("PRODID:-//XWiki//Full Calendar Macro Benchmarks//EN");
+        line("X-WR-TIMEZONE:" + this.timeZones.get(0));
+        for (int i = 0; i < eventCount; i++) {
+            addEvent(i);
+        }
+        line("END:VCALENDAR");
+        return this.content.toString().getBytes(StandardCharsets.UTF_8);
+    }
+
+    private void addEvent(int index)
+    {
+        String uid = String.format("event-%d@benchmark.xwiki.org", index);
+        LocalDateTime start = FIRST_DAY.plusDays(this.random.nextInt(DAY_SPAN))
+            .atTime(WORKING_HOURS_START + this.random.nextInt(WORKING_HOURS), MINUTES_STEP
+                * this.random.nextInt(STEPS_PER_HOUR));
+        LocalDateTime end = start.plusMinutes(MINUTES_STEP * (1L + this.random.nextInt(MAX_DURATION_STEPS)));
+        int kind = this.random.nextInt(PERCENT);
+        String timeZone = this.timeZones.get(this.random.nextInt(this.timeZones.size()));
+
+        line("BEGIN:VEVENT");
+        if (kind < TIMED_EVENTS) {
+            line("UID:" + uid);
+            addTimedPeriod(start, end, timeZone);
+        } else if (kind < ALL_DAY_EVENTS) {
+            line("UID:" + uid);
+            addAllDayPeriod(start.toLocalDate(), 1 + this.random.nextInt(3));
+        } else if (kind < WEEKLY_EVENTS) {
+            line("UID:" + uid);
+            addTimedPeriod(start, end, timeZone);
+            line(RRULE + getWeeklyRule() + getBound(start));
+            this.lastWeeklyUid = uid;
+            this.lastWeeklyStart = start;
+            this.lastWeeklyTimeZone = timeZone;
+        } else if (kind < DAILY_EVENTS) {
+            line("UID:" + uid);
+            addTimedPeriod(start, end, timeZone);
+            line(RRULE + "DAILY;COUNT=" + (1 + this.random.nextInt(MAX_COUNT)));
+            line("EXDATE" + TZID_PARAMETER + timeZone + ':' + start.plusDays(2).format(DATE_TIME_FORMAT));
+        } else if (kind < MONTHLY_EVENTS) {
+            line("UID:" + uid);
+            addTimedPeriod(start, end, timeZone);
+            line(RRULE + "MONTHLY" + getBound(start));
+        } else if (this.lastWeeklyUid != null) {
+            // Move one instance of the last weekly meeting by an hour.
+            LocalDateTime originalStart = this.lastWeeklyStart.plusWeeks(1);
+            line("UID:" + this.lastWeeklyUid);
+            line("RECURRENCE-ID" + TZID_PARAMETER + this.lastWeeklyTimeZone + ':'
+                + originalStart.format(DATE_TIME_FORMAT));
+            addTimedPeriod(originalStart.plusHours(1), originalStart.plusHours(2), this.lastWeeklyTimeZone);
+        } else {
+            line("UID:" + uid);
+            addAllDayPeriod(start.toLocalDate(), 1);
+            line(RRULE + "YEARLY");
+        }
+        line("SUMMARY:Event " + index);
+        line("DESCRIPTION:" + getDescription(index));
+        line("DTSTAMP:20240101T000000Z");
+        line("END:VEVENT");
+    }
+
+    private String getWeeklyRule()
+    {
+        switch (this.random.nextInt(3)) {
+            case 0:
+                return "WEEKLY;BYDAY=MO,TU,WE,TH,FR";
+            case 1:
+                return "WEEKLY;INTERVAL=2";
+            default:
+                return "WEEKLY";
+        }
+    }
+
+    private String getBound(LocalDateTime start)
+    {
+        switch (this.random.nextInt(3)) {
+            case 0:
+                return ";COUNT=" + (1 + this.random.nextInt(MAX_COUNT));
+            case 1:
+                return ";UNTIL=" + start.plusDays(1 + this.random.nextInt(MAX_UNTIL_DAYS)).format(DATE_TIME_FORMAT)
+                    + 'Z';
+            default:
+                // Open ended.
+                return "";
+        }
+    }
+
+    private String getDescription(int index)
+    {
+        StringBuilder description = new StringBuilder("Synthetic event ").append(index)
+            .append(" generated for the benchmarks. ");
+        while (description.length() < this.descriptionLength) {
+            description.append(DESCRIPTION_TEXT);
+        }
+        return description.toString();
+    }
+
+    private void addTimedPeriod(LocalDateTime start, LocalDateTime end, String timeZone)
+    {
+        line(DTSTART + TZID_PARAMETER + timeZone + ':' + start.format(DATE_TIME_FORMAT));
+        line(DTEND + TZID_PARAMETER + timeZone + ':' + end.format(DATE_TIME_FORMAT));
+    }
+
+    private void addAllDayPeriod(LocalDate start, int days)
+    {
+        line(DTSTART + DATE_PARAMETER + start.format(DATE_FORMAT));
+        line(DTEND + DATE_PARAMETER + start.plusDays(days).format(DATE_FORMAT));
+    }
+
+    private void line(String value)
+    {
+        // Fold the long lines, as required by RFC 5545.
+        int position = Math.min(MAX_LINE_LENGTH, value.length());
+        this.content.append(value, 0, position);
+        while (position < value.length()) {
+            int next = Math.min(position + MAX_LINE_LENGTH - 1, value.length());
+            this.content.append(FOLDING).append(value, position, next);
+            position = next;
+        }
+        this.content.append(CRLF);
+    }
+}
@@ -0,0 +1,241 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.fullcalendar.benchmark.load;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URL;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.commons.lang3.concurrent.BasicThreadFactory;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+/**
+ * Local HTTP server standing in for the servers publishing iCal feeds, with a configurable latency, validator
+ * behavior and rate of failures. It listens on the loopback interface only.
+ *
+ * @version $Id$
+ * @since 2.5.5
+ */
+public class FeedServer implements AutoCloseable
+{
+    private static final String PATH_PREFIX = "/feeds/";
+
+    private static final String PATH_SUFFIX = ".ics";
+
+    private static final int THREADS = 64;
+
+    private static final int OK = 200;
+
+    private static final int NOT_MODIFIED = 304;
+
+    private static final int NOT_FOUND = 404;
+
+    private static final int SERVICE_UNAVAILABLE = 503;
+
+    private final HttpServer server;
+
+    private final ExecutorService executor;
+
+    private final List<byte[]> feeds;
+
+    private final long latencyMillis;
+
+    private final ETagMode eTagMode;
+
+    private final double failureRate;
+
+    private final AtomicLong requestCount = new AtomicLong();
+
+    private final AtomicLong notModifiedCount = new AtomicLong();
+
+    private final AtomicLong failureCount = new AtomicLong();
+
+    /**
+     * How the server uses the {@code ETag} validator.
+     */
+    public enum ETagMode
+    {
+        /**
+         * No validator is sent, so the feeds are downloaded on each request.
+         */
+        NONE,
+
+        /**
+         * The validator only depends on the feed, so conditional requests get a {@code 304 Not Modified} response.
+         */
+        STABLE,
+
+        /**
+         * The validator changes on each response although the content does not, like on servers adding a timestamp
+         * to their validators.
+         */
+        CHANGING
+    }
+
+    /**
+     * Start the server.
+     *
+     * @param feeds the content of the served feeds
+     * @param latencyMillis the time waited before answering each request
+     * @param eTagMode how the {@code ETag} validator is used
+     * @param failureRate the fraction of the requests answered with an error, between {@code 0} and {@code 1}
+     * @throws IOException if the server cannot be started
+     */
+    public FeedServer(List<byte[]> feeds, long latencyMillis, ETagMode eTagMode, double failureRate)
+        throws IOException
+    {
+        this.feeds = feeds;
+        this.latencyMillis = latencyMillis;
+        this.eTagMode = eTagMode;
+        this.failureRate = failureRate;
+        this.executor = Executors.newFixedThreadPool(THREADS,
+            new BasicThreadFactory.Builder().namingPattern("Feed server %d").daemon(true).build());
+        this.server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 0);
+        this.server.createContext(PATH_PREFIX, this::handle);
+        this.server.setExecutor(this.executor);
+        this.server.start();
+    }
+
+    /**
+     * @param index the index of the feed
+     * @return the URL of the feed
+     * @throws IOException if the URL is malformed
+     */
+    public URL getFeedURL(int index) throws IOException
+    {
+        return new URL("http", InetAddress.getLoopbackAddress().getHostAddress(),
+            this.server.getAddress().getPort(), PATH_PREFIX + index + PATH_SUFFIX);
+    }
+
+    /**
+     * @return the number of requests received
+     */
+    public long getRequestCount()
+    {
+        return this.requestCount.get();
+    }
+
+    /**
+     * @return the number of {@code 304 Not Modified} responses
+     */
+    public long getNotModifiedCount()
+    {
+        return this.notModifiedCount.get();
+    }
+
+    /**
+     * @return the number of injected failures
+     */
+    public long getFailureCount()
+    {
+        return this.failureCount.get();
+    }
+
+    @Override
+    public void close()
+    {
+        this.server.stop(0);
+        this.executor.shutdownNow();
+    }
+
+    private void handle(HttpExchange exchange) throws IOException
+    {
+        try {
+            respond(exchange, this.requestCount.incrementAndGet());
+        } finally {
+            exchange.close();
+        }
+    }
+
+    private void respond(HttpExchange exchange, long requestNumber) throws IOException
+    {
+        sleep();
+        if (ThreadLocalRandom.current().nextDouble() < this.failureRate) {
+            this.failureCount.incrementAndGet();
+            exchange.sendResponseHeaders(SERVICE_UNAVAILABLE, -1);
+            return;
+        }
+        int index = getFeedIndex(exchange.getRequestURI().getPath());
+        if (index < 0 || index >= this.feeds.size()) {
+            exchange.sendResponseHeaders(NOT_FOUND, -1);
+            return;
+        }
+
+        byte[] content = this.feeds.get(index);
+        String eTag = getETag(index, content, requestNumber);
+        if (eTag != null) {
+            exchange.getResponseHeaders().set("ETag", eTag);
+            if (eTag.equals(exchange.getRequestHeaders().getFirst("If-None-Match"))) {
+                this.notModifiedCount.incrementAndGet();
+                exchange.sendResponseHeaders(NOT_MODIFIED, -1);
+                return;
+            }
+        }
+        exchange.getResponseHeaders().set("Content-Type", "text/calendar; charset=UTF-8");
+        exchange.sendResponseHeaders(OK, content.length);
+        try (OutputStream body = exchange.getResponseBody()) {
+            body.write(content);
+        }
+    }
+
+    private void sleep()
+    {
+        if (this.latencyMillis > 0) {
+            try {
+                Thread.sleep(this.latencyMillis);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    private int getFeedIndex(String path)
+    {
+        if (!path.endsWith(PATH_SUFFIX)) {
+            return -1;
+        }
+        try {
+            return Integer.parseInt(path.substring(PATH_PREFIX.length(), path.length() - PATH_SUFFIX.length()));
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    private String getETag(int index, byte[] content, long requestNumber)
+    {
+        switch (this.eTagMode) {
+            case STABLE:
+                return String.format("\"%d-%d\"", index, content.length);
+            case CHANGING:
+                return String.format("\"%d-%d-%d\"", index, content.length, requestNumber);
+            default:
+                return null;
+        }
+    }
+}
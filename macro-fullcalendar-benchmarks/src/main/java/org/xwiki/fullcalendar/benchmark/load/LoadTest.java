@@ -0,0 +1,260 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.fullcalendar.benchmark.load;
+
+import java.lang.management.ManagementFactory;
+import java.net.URL;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+import org.xwiki.component.embed.EmbeddableComponentManager;
+import org.xwiki.fullcalendar.FullCalendarManager;
+import org.xwiki.fullcalendar.benchmark.BenchmarkComponents;
+import org.xwiki.fullcalendar.benchmark.SyntheticCalendarGenerator;
+import org.xwiki.fullcalendar.benchmark.load.FeedServer.ETagMode;
+
+import com.sun.management.ThreadMXBean;
+
+/**
+ * Load test calling {@link FullCalendarManager#getICalEvents(URL, Date, Date, boolean)} from many threads for random
+ * months of synthetic feeds served by a local {@link FeedServer}, and reporting the throughput, the latency
+ * percentiles and the allocation rate. Everything runs offline. The options are given as {@code name=value}
+ * arguments, and the arguments starting with {@code fullcalendar.} are used as configuration properties:
+ *
+ * <pre>
+ * java -cp target/benchmarks.jar org.xwiki.fullcalendar.benchmark.load.LoadTest events=10000 threads=32
+ *     latency=100 etag=stable failureRate=0.01 fullcalendar.refresh.interval=0
+ * </pre>
+ *
+ * @version $Id$
+ * @since 2.5.5
+ */
+public final class LoadTest
+{
+    private static final List<String> TIME_ZONES = List.of(SyntheticCalendarGenerator.TIME_ZONE,
+        "America/New_York", "America/Los_Angeles", "Asia/Tokyo", "Asia/Kolkata", "Australia/Sydney", "UTC");
+
+    private static final String CONFIGURATION_PREFIX = "fullcalendar.";
+
+    private static final double[] PERCENTILES = { 50, 90, 99, 99.9 };
+
+    private static final double HUNDRED = 100;
+
+    private static final double BYTES_PER_MEGABYTE = 1024 * 1024;
+
+    private static final long NANOS_PER_MILLI = TimeUnit.MILLISECONDS.toNanos(1);
+
+    private final Map<String, String> options;
+
+    private final FullCalendarManager manager;
+
+    private final List<URL> feedURLs;
+
+    private final boolean collapse;
+
+    /**
+     * The measures of a worker thread.
+     */
+    private static final class WorkerResult
+    {
+        private long[] latencies = new long[1024];
+
+        private int requestCount;
+
+        private int errorCount;
+
+        private long allocatedBytes;
+
+        void record(long latency)
+        {
+            if (this.requestCount == this.latencies.length) {
+                this.latencies = Arrays.copyOf(this.latencies, 2 * this.requestCount);
+            }
+            this.latencies[this.requestCount++] = latency;
+        }
+    }
+
+    private LoadTest(Map<String, String> options, FullCalendarManager manager, List<URL> feedURLs)
+    {
+        this.options = options;
+        this.manager = manager;
+        this.feedURLs = feedURLs;
+        this.collapse = Boolean.parseBoolean(options.getOrDefault("collapse", "false"));
+    }
+
+    /**
+     * Run the load test.
+     *
+     * @param args the options, as {@code name=value} pairs
+     * @throws Exception if the test cannot be set up
+     */
+    public static void main(String[] args) throws Exception
+    {
+        Map<String, String> options = new HashMap<>();
+        Map<String, Object> configuration = new HashMap<>();
+        for (String arg : args) {
+            String[] option = arg.split("=", 2);
+            if (option.length != 2) {
+                throw new IllegalArgumentException(String.format("Invalid option [%s], expected name=value.", arg));
+            }
+            if (option[0].startsWith(CONFIGURATION_PREFIX)) {
+                configuration.put(option[0], option[1]);
+            } else {
+                options.put(option[0], option[1]);
+            }
+        }
+
+        int feedCount = getInt(options, "feeds", 4);
+        int eventCount = getInt(options, "events", 10000);
+        int descriptionLength = getInt(options, "descriptionLength", 500);
+        List<byte[]> feeds = new ArrayList<>(feedCount);
+        for (int i = 0; i < feedCount; i++) {
+            feeds.add(new SyntheticCalendarGenerator(i, TIME_ZONES, descriptionLength).generateCalendar(eventCount));
+        }
+
+        ETagMode eTagMode = ETagMode.valueOf(options.getOrDefault("etag", "stable").toUpperCase(Locale.ROOT));
+        double failureRate = Double.parseDouble(options.getOrDefault("failureRate", "0"));
+        EmbeddableComponentManager componentManager = BenchmarkComponents.createComponentManager(configuration);
+        try (FeedServer server = new FeedServer(feeds, getInt(options, "latency", 50), eTagMode, failureRate)) {
+            List<URL> feedURLs = new ArrayList<>(feedCount);
+            for (int i = 0; i < feedCount; i++) {
+                feedURLs.add(server.getFeedURL(i));
+            }
+            new LoadTest(options, componentManager.getInstance(FullCalendarManager.class), feedURLs).run();
+            System.out.printf("Feed server: %d requests, %d not modified, %d injected failures%n",
+                server.getRequestCount(), server.getNotModifiedCount(), server.getFailureCount());
+        } finally {
+            componentManager.dispose();
+        }
+    }
+
+    private void run() throws Exception
+    {
+        int threads = getInt(this.options, "threads", 16);
+        long warmupNanos = TimeUnit.SECONDS.toNanos(getInt(this.options, "warmup", 10));
+        long durationNanos = TimeUnit.SECONDS.toNanos(getInt(this.options, "duration", 60));
+
+        long measureStart = System.nanoTime() + warmupNanos;
+        long measureEnd = measureStart + durationNanos;
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            List<Future<WorkerResult>> futures = new ArrayList<>(threads);
+            for (int i = 0; i < threads; i++) {
+                futures.add(executor.submit(() -> work(measureStart, measureEnd)));
+            }
+            List<WorkerResult> results = new ArrayList<>(threads);
+            for (Future<WorkerResult> future : futures) {
+                results.add(future.get());
+            }
+            report(results, durationNanos);
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private WorkerResult work(long measureStart, long measureEnd)
+    {
+        ThreadMXBean threadBean = (ThreadMXBean) ManagementFactory.getThreadMXBean();
+        long threadId = Thread.currentThread().getId();
+        WorkerResult result = new WorkerResult();
+        long allocatedAtStart = -1;
+        long now = System.nanoTime();
+        while (now < measureEnd) {
+            if (allocatedAtStart < 0 && now >= measureStart) {
+                allocatedAtStart = threadBean.getThreadAllocatedBytes(threadId);
+            }
+            boolean success = callManager();
+            long end = System.nanoTime();
+            if (now >= measureStart) {
+                result.record(end - now);
+                if (!success) {
+                    result.errorCount++;
+                }
+            }
+            now = end;
+        }
+        if (allocatedAtStart >= 0) {
+            result.allocatedBytes = threadBean.getThreadAllocatedBytes(threadId) - allocatedAtStart;
+        }
+        return result;
+    }
+
+    private boolean callManager()
+    {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        URL feedURL = this.feedURLs.get(random.nextInt(this.feedURLs.size()));
+        // A month view shows a few days of the previous and next months.
+        LocalDate monthStart = SyntheticCalendarGenerator.FIRST_DAY.plusMonths(
+            random.nextInt(SyntheticCalendarGenerator.DAY_SPAN / 31)).minusDays(7);
+        try {
+            this.manager.getICalEvents(feedURL, BenchmarkComponents.toDate(monthStart),
+                BenchmarkComponents.toDate(monthStart.plusWeeks(6)), this.collapse);
+            return true;
+        } catch (Exception e) {
+            return false;
+        }
+    }
+
+    private void report(List<WorkerResult> results, long durationNanos)
+    {
+        int requestCount = results.stream().mapToInt(result -> result.requestCount).sum();
+        int errorCount = results.stream().mapToInt(result -> result.errorCount).sum();
+        long allocatedBytes = results.stream().mapToLong(result -> result.allocatedBytes).sum();
+        long[] latencies = new long[requestCount];
+        int position = 0;
+        for (WorkerResult result : results) {
+            System.arraycopy(result.latencies, 0, latencies, position, result.requestCount);
+            position += result.requestCount;
+        }
+        Arrays.sort(latencies);
+
+        double seconds = (double) durationNanos / TimeUnit.SECONDS.toNanos(1);
+        System.out.printf("Requests: %d (%d errors), throughput: %.1f requests/s%n", requestCount, errorCount,
+            requestCount / seconds);
+        if (requestCount > 0) {
+            StringBuilder percentiles = new StringBuilder("Latency (ms):");
+            for (double percentile : PERCENTILES) {
+                int index = (int) Math.min(requestCount - 1, Math.ceil(percentile / HUNDRED * requestCount) - 1);
+                percentiles.append(String.format(" p%s=%.1f", percentile, (double) latencies[index] / NANOS_PER_MILLI));
+            }
+            percentiles.append(String.format(" max=%.1f", (double) latencies[requestCount - 1] / NANOS_PER_MILLI));
+            System.out.println(percentiles);
+            System.out.printf("Allocation by the request threads: %.1f MB/s, %.1f KB/request%n",
+                allocatedBytes / BYTES_PER_MEGABYTE / seconds, allocatedBytes / 1024.0 / requestCount);
+        }
+    }
+
+    private static int getInt(Map<String, String> options, String name, int defaultValue)
+    {
+        String value = options.get(name);
+        return value == null ? defaultValue : Integer.parseInt(value);
+    }
+}